@@ -0,0 +1,74 @@
+package com.example.my_web_app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.my_web_app.MyWebAppApplication;
+import com.example.my_web_app.config.ProductSequenceAligner;
+import com.example.my_web_app.service.ProductSearchIndex;
+
+/**
+ * ベンチマーク用にアプリケーションを起動し、指定件数の商品を投入する
+ * DBはベンチマークごとに独立したインメモリH2を使う。
+ */
+public final class BenchmarkApplication {
+
+    private static final int INSERT_BATCH_SIZE = 1_000;
+
+    // 商品名の末尾に付ける語（検索ベンチマークの部分一致に使う）
+    static final String[] CATEGORIES = { "ノートPC", "マウス", "キーボード", "モニター", "ケーブル" };
+
+    private BenchmarkApplication() {}
+
+    /**
+     * Webサーバーなしでアプリケーションを起動する
+     * @param properties 追加の設定（"key=value" 形式）
+     */
+    public static ConfigurableApplicationContext start(String... properties) {
+        List<String> all = new ArrayList<>(List.of(
+            "spring.datasource.url=jdbc:h2:mem:bench-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+            "spring.jpa.show-sql=false",
+            "logging.level.root=WARN"));
+        all.addAll(List.of(properties));
+        // プロファイルの設定より優先させるため、コマンドライン引数として渡す
+        return new SpringApplicationBuilder(MyWebAppApplication.class)
+            .profiles("test")
+            .web(WebApplicationType.NONE)
+            .run(all.stream().map(property -> "--" + property).toArray(String[]::new));
+    }
+
+    /**
+     * 商品を count 件投入し、検索インデックスを作り直す
+     * IDは1〜count、商品名は「商品{n} {カテゴリ}」、在庫は stock 個
+     */
+    public static void seedProducts(ConfigurableApplicationContext context, int count, int stock) {
+        insertProducts(context.getBean(JdbcTemplate.class), count, stock);
+        // IDを指定して投入したため、以降アプリから登録する商品のIDと重ならないようにシーケンスを進める
+        context.getBean(ProductSequenceAligner.class).align();
+        context.getBean(ProductSearchIndex.class).rebuild();
+    }
+
+    /**
+     * 商品を count 件、JDBCで直接投入する（アプリケーションを起動せずにDBを用意する場合に使う）
+     */
+    public static void insertProducts(JdbcTemplate jdbcTemplate, int count, int stock) {
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 1; i <= count; i++) {
+            batch.add(new Object[] { (long) i, productName(i), 100 + i % 10_000, stock, "ベンチマーク用の商品説明 " + i });
+            if (batch.size() == INSERT_BATCH_SIZE || i == count) {
+                jdbcTemplate.batchUpdate(
+                    "insert into product (id, name, price, stock, description, version) values (?, ?, ?, ?, ?, 0)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    public static String productName(int n) {
+        return "商品" + n + " " + CATEGORIES[n % CATEGORIES.length];
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.my_web_app.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * 高速起動（mvn -Pfast-start package の出力）の起動時間と最初のリクエストのレイテンシ
+ * - startToReady : プロセスの起動から Readiness（/actuator/health/readiness）が UP になるまで
+ * - firstRequest : Readiness が UP になった直後の売れ筋商品の取得（GET /api/products/1）1回
+ * mode=jar は展開したjarをそのまま、cds はCDSのアーカイブを使い、aot-cds はさらにAOTで生成したBean定義を使う。
+ * warmup は起動時のキャッシュの読み込み（app.cache.warmup.enabled）の有無。
+ * アプリは別プロセスで起動するため、target/fast-start を先に作っておく。
+ *   mvn -Pfast-start,jmh verify -Djmh.args="FastStartupBenchmark"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FastStartupBenchmark {
+
+    private static final Path FAST_START_DIR = Paths.get("target", "fast-start");
+
+    @Param({ "jar", "cds", "aot-cds" })
+    public String mode;
+
+    @Param({ "false", "true" })
+    public boolean warmup;
+
+    @Param({ "100000" })
+    public int catalogSize;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private Path dbDir;
+    private Path jar;
+    private Process process;
+    private int port;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        try (var files = Files.list(FAST_START_DIR)) {
+            jar = files.filter(file -> file.toString().endsWith(".jar")).findFirst()
+                .orElseThrow(() -> new IllegalStateException("先に mvn -Pfast-start package を実行してください"));
+        }
+        dbDir = Files.createTempDirectory("fast-start-bench");
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:file:" + dbPath(), "sa", "password")) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/schema.sql"));
+            BenchmarkApplication.insertProducts(
+                new JdbcTemplate(new SingleConnectionDataSource(connection, true)), catalogSize, 100);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(dbDir);
+    }
+
+    // firstRequest 用: 計測の前に起動して Readiness を待つ
+    @State(Scope.Benchmark)
+    public static class Started {
+
+        @Setup(Level.Iteration)
+        public void start(FastStartupBenchmark benchmark) throws Exception {
+            benchmark.startToReady();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() throws InterruptedException {
+        if (process != null) {
+            process.destroy();
+            process.waitFor(30, TimeUnit.SECONDS);
+            process = null;
+        }
+    }
+
+    @Benchmark
+    public int startToReady() throws Exception {
+        port = freePort();
+        process = new ProcessBuilder(command())
+            .directory(FAST_START_DIR.toFile())
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+
+        HttpRequest readiness = HttpRequest.newBuilder(uri("/actuator/health/readiness")).build();
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("アプリの起動に失敗しました（終了コード " + process.exitValue() + "）");
+            }
+            try {
+                if (client.send(readiness, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return port;
+                }
+            } catch (IOException e) {
+                // まだ受け付けを始めていない
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Benchmark
+    public int firstRequest(Started started) throws Exception {
+        HttpResponse<byte[]> response = client.send(
+            HttpRequest.newBuilder(uri("/api/products/1")).build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("商品を取得できませんでした: " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    private List<String> command() {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (!mode.equals("jar")) {
+            command.add("-XX:SharedArchiveFile=application.jsa");
+        }
+        if (mode.equals("aot-cds")) {
+            command.add("-Dspring.aot.enabled=true");
+        }
+        command.add("-jar");
+        command.add(jar.getFileName().toString());
+        command.add("--spring.profiles.active=prod");
+        command.add("--app.db.path=" + dbPath());
+        command.add("--server.port=" + port);
+        command.add("--app.cache.warmup.enabled=" + warmup);
+        command.add("--logging.level.root=WARN");
+        return command;
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private String dbPath() {
+        return dbDir.resolve("db").toAbsolutePath().toString();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
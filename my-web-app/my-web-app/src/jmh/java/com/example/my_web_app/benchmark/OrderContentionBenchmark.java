@@ -0,0 +1,75 @@
+package com.example.my_web_app.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.my_web_app.model.Order;
+import com.example.my_web_app.service.OrderService;
+import com.example.my_web_app.service.ShardedStockService;
+
+/**
+ * OrderService.orderProduct の同時実行時のスループット
+ * hotProducts=1 は全スレッドが同じ商品に注文する（セール時の人気商品）、
+ * hotProducts=100 は注文が100商品に分散する場合。
+ * stockSlots>0 は在庫をそのスロット数に分割した場合。スレッド数（-t）を変えて、コア数に対する伸びを確認する。
+ *   mvn -Pjmh verify -Djmh.args="OrderContentionBenchmark -p hotProducts=1 -t 4"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class OrderContentionBenchmark {
+
+    @Param({ "1", "100" })
+    public int hotProducts;
+
+    @Param({ "0", "16" })
+    public int stockSlots;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start();
+        // 計測中に在庫切れにならない数を入れておく
+        BenchmarkApplication.seedProducts(context, hotProducts, Integer.MAX_VALUE);
+        if (stockSlots > 0) {
+            ShardedStockService shardedStockService = context.getBean(ShardedStockService.class);
+            for (long productId = 1; productId <= hotProducts; productId++) {
+                shardedStockService.reshard(productId, stockSlots);
+            }
+        }
+        orderService = context.getBean(OrderService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Order orderProduct() {
+        long productId = ThreadLocalRandom.current().nextInt(1, hotProducts + 1);
+        return orderService.orderProduct(new Order(null, productId, "ベンチマーク", 100, 1, 100));
+    }
+}
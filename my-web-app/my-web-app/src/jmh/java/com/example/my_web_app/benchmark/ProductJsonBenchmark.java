@@ -0,0 +1,59 @@
+package com.example.my_web_app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 商品一覧のJSONシリアライズ（GET /api/products のレスポンス生成）の計測
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductJsonBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    public int listSize;
+
+    private ObjectMapper objectMapper;
+    private List<ProductView> products;
+
+    @Setup
+    public void setup() {
+        // Spring MVC と同じ設定のObjectMapper
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        products = new ArrayList<>(listSize);
+        for (int i = 1; i <= listSize; i++) {
+            Product product = new Product(BenchmarkApplication.productName(i), 100 + i, 10, "ベンチマーク用の商品説明 " + i);
+            product.setId((long) i);
+            product.setImageUrl("/api/images/" + i);
+            products.add(ProductView.of(product));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeProductList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(products);
+    }
+}
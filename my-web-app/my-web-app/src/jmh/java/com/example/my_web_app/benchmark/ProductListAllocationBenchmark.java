@@ -0,0 +1,76 @@
+package com.example.my_web_app.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductView;
+import com.example.my_web_app.repository.ProductRepository;
+
+/**
+ * 全件一覧の読み込みで、エンティティとして読む場合と ProductView として読む場合の比較
+ * 1回あたりの割り当て量は GCプロファイラで確認する（gc.alloc.rate.norm）。
+ *   mvn -Pjmh verify -Djmh.args="ProductListAllocationBenchmark -prof gc"
+ * キャッシュは使わない（毎回DBから読む）。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ProductListAllocationBenchmark {
+
+    @Param({ "100000" })
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private ProductRepository productRepository;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start("app.cache.product-queries.maximum-rows=0");
+        BenchmarkApplication.seedProducts(context, rows, 100);
+        productRepository = context.getBean(ProductRepository.class);
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // 変更前: 管理対象のエンティティ（変更検知用のスナップショット付き）
+    @Benchmark
+    public List<Product> entities() {
+        return readWrite.execute(status -> productRepository.findAll());
+    }
+
+    // 変更後: 読み取り専用トランザクションで ProductView を作る（ProductService.findAll と同じ）
+    @Benchmark
+    public List<ProductView> views() {
+        return readOnly.execute(status -> productRepository.findAllViews());
+    }
+}
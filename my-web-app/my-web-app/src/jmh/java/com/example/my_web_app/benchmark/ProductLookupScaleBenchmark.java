@@ -0,0 +1,72 @@
+package com.example.my_web_app.benchmark;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductView;
+import com.example.my_web_app.service.ProductService;
+
+/**
+ * 100万件までの商品数でのID検索・全文検索の計測
+ * ID検索の時間が1000件から100万件まで変わらないか、100万件での検索が1ミリ秒以内に収まるかを計測する。
+ * 全件取得（findAll）は100万件では計測にならないため ProductServiceBenchmark とは分けている。
+ * キャッシュの上限は0にして、毎回DB/インデックスを引いた場合を計測する。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g") // 100万件の商品と検索インデックスを載せる
+@State(Scope.Benchmark)
+public class ProductLookupScaleBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start("app.cache.products.maximum-size=0", "app.cache.product-queries.maximum-rows=0");
+        BenchmarkApplication.seedProducts(context, catalogSize, 100);
+        productService = context.getBean(ProductService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private int randomProduct() {
+        return ThreadLocalRandom.current().nextInt(1, catalogSize + 1);
+    }
+
+    @Benchmark
+    public Optional<Product> findProductsById() {
+        return productService.findProductsById((long) randomProduct());
+    }
+
+    @Benchmark
+    public List<ProductView> searchProducts() {
+        return productService.searchProducts("商品" + randomProduct(), 20);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.my_web_app.benchmark;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductView;
+import com.example.my_web_app.service.ProductService;
+
+/**
+ * ProductService の読み取り系の計測
+ * catalogSize を変えて、ID検索・名前検索が商品数に依存しないことを確認する。
+ * cached=false はキャッシュの上限を0にして、毎回DB/インデックスを引いた場合を計測する。
+ * 100万件での計測は ProductLookupScaleBenchmark で行う。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductServiceBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int catalogSize;
+
+    @Param({ "true", "false" })
+    public boolean cached;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = cached
+            ? BenchmarkApplication.start()
+            : BenchmarkApplication.start("app.cache.products.maximum-size=0", "app.cache.product-queries.maximum-rows=0");
+        BenchmarkApplication.seedProducts(context, catalogSize, 100);
+        productService = context.getBean(ProductService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private int randomProduct() {
+        return ThreadLocalRandom.current().nextInt(1, catalogSize + 1);
+    }
+
+    @Benchmark
+    public List<ProductView> findAll() {
+        return productService.findAll();
+    }
+
+    @Benchmark
+    public Optional<Product> findProductsById() {
+        return productService.findProductsById((long) randomProduct());
+    }
+
+    @Benchmark
+    public List<ProductView> findProductsByName() {
+        return productService.findProductsByName(BenchmarkApplication.productName(randomProduct()));
+    }
+
+    @Benchmark
+    public List<ProductView> searchProducts() {
+        return productService.searchProducts("商品" + randomProduct(), 20);
+    }
+}
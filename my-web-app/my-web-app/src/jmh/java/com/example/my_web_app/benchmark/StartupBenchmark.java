@@ -0,0 +1,91 @@
+package com.example.my_web_app.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.util.FileSystemUtils;
+
+import com.example.my_web_app.MyWebAppApplication;
+
+/**
+ * プロファイルごとの起動時間（Webサーバーが受け付けを始めるまで）
+ * profile=default は ddl-auto=update、profile=prod は db/schema.sql + ddl-auto=validate と調整済みの接続プール。
+ * 既存のファイルDB（商品 catalogSize 件）に対する再起動を想定し、DBは計測前にJDBCで用意する。
+ * 起動時間はJVMのウォームアップの影響を受けるため、フォークごとに1回だけ起動して計測する。
+ *   mvn -Pjmh verify -Djmh.args="StartupBenchmark -p catalogSize=100000"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param({ "default", "prod" })
+    public String profile;
+
+    @Param({ "0", "100000" })
+    public int catalogSize;
+
+    private Path dbDir;
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        dbDir = Files.createTempDirectory("startup-bench");
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:file:" + dbPath(), "sa", "password")) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/schema.sql"));
+            BenchmarkApplication.insertProducts(
+                new JdbcTemplate(new SingleConnectionDataSource(connection, true)), catalogSize, 100);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(dbDir);
+    }
+
+    private String dbPath() {
+        return dbDir.resolve("db").toAbsolutePath().toString();
+    }
+
+    @Benchmark
+    public ConfigurableApplicationContext start() {
+        context = new SpringApplicationBuilder(MyWebAppApplication.class)
+            .profiles(profile)
+            .run("--app.db.path=" + dbPath(), "--server.port=0", "--logging.level.root=WARN");
+        return context;
+    }
+}
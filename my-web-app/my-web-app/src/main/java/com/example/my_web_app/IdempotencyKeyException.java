@@ -0,0 +1,18 @@
+package com.example.my_web_app;
+
+import org.springframework.http.HttpStatus;
+
+// Idempotency-Key の再送を処理できない場合（処理中の注文と重なった / 同じキーで内容が異なる）
+public class IdempotencyKeyException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    public IdempotencyKeyException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.my_web_app;
+
+// 注文が混み合っている（在庫の引き当てのロック待ちが上限を超えた）場合。再試行すれば受け付けられる
+public class OrderBusyException extends RuntimeException {
+
+    public OrderBusyException() {
+        super("注文が混み合っています。しばらくしてから再度お試しください。");
+    }
+}
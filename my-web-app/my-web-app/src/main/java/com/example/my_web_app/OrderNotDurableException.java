@@ -0,0 +1,10 @@
+package com.example.my_web_app;
+
+// 注文はジャーナルに追記済み（DBへの登録も予約済み）だが、ディスクへの書き出しを確認できなかった場合。
+// 再試行すると注文が重複するため、受け付け済み（202）として扱う
+public class OrderNotDurableException extends RuntimeException {
+
+    public OrderNotDurableException(Throwable cause) {
+        super("注文を受け付けましたが、ディスクへの書き出しを確認できませんでした。再注文はしないでください。", cause);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.my_web_app.config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 重いエンドポイントの受け付け制限（過負荷で全体のレイテンシが崩れないようにする）
+ *
+ * 注文と、アップロード・一括登録・一括更新（以下「一括」）のリクエストに対して、
+ * - クライアントごとのトークンバケットを超えたら 429 Too Many Requests
+ * - エンドポイントの種類ごとの同時実行数を超えたら 503 Service Unavailable
+ * をすぐに返す（待たせない）。どちらも Retry-After ヘッダーに再試行までの秒数を入れる。
+ * 処理できる分だけを受け付けるため、飽和しても受け付けたリクエストのp99は保たれ、接続プールも枯渇しない。
+ *
+ * メトリクス:
+ * - http.admission.rejected{endpoint, reason} : 断ったリクエストの数（reason: rate_limited / overloaded）
+ * - http.admission.in_flight{endpoint}         : 処理中のリクエストの数
+ */
+@Component
+@ConditionalOnProperty(name = "app.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final AntPathMatcher PATHS = new AntPathMatcher();
+
+    private static final byte[] RATE_LIMITED_BODY =
+        "{\"message\":\"リクエストが多すぎます。しばらくしてから再度お試しください。\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OVERLOADED_BODY =
+        "{\"message\":\"混み合っています。しばらくしてから再度お試しください。\"}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 制限の単位（エンドポイントの種類）
+     * @param name     設定（app.admission.{name}.*）とメトリクスのタグに使う名前
+     * @param method   HTTPメソッド
+     * @param patterns 対象のパス
+     */
+    private record Endpoint(String name, String method, List<String> patterns) {
+
+        boolean matches(String method, String path) {
+            return this.method.equals(method) && patterns.stream().anyMatch(pattern -> PATHS.match(pattern, path));
+        }
+    }
+
+    private static final List<Endpoint> ENDPOINTS = List.of(
+        new Endpoint("orders", "POST", List.of("/api/orders", "/api/orders/batch")),
+        new Endpoint("bulk", "POST", List.of("/api/products/{id}/image", "/api/products/{id}/update", "/api/products/import")),
+        new Endpoint("bulk", "PATCH", List.of("/api/products")));
+
+    /**
+     * エンドポイントの種類ごとの制限
+     */
+    private static final class Limits {
+        private final TokenBucketLimiter limiter;
+        private final Semaphore slots;
+        private final Counter rateLimited;
+        private final Counter overloaded;
+
+        private Limits(String name, Environment environment, MeterRegistry meterRegistry) {
+            String prefix = "app.admission." + name + ".";
+            int maxConcurrent = environment.getProperty(prefix + "max-concurrent", Integer.class, 32);
+            this.limiter = new TokenBucketLimiter(
+                environment.getProperty(prefix + "rate", Double.class, 10.0),
+                environment.getProperty(prefix + "burst", Integer.class, 20),
+                environment.getProperty("app.admission.maximum-clients", Long.class, 100_000L));
+            this.slots = new Semaphore(maxConcurrent);
+            this.rateLimited = rejected(meterRegistry, name, "rate_limited");
+            this.overloaded = rejected(meterRegistry, name, "overloaded");
+            Gauge.builder("http.admission.in_flight", slots, s -> maxConcurrent - s.availablePermits())
+                .description("処理中のリクエストの数").tag("endpoint", name).register(meterRegistry);
+        }
+
+        private static Counter rejected(MeterRegistry meterRegistry, String name, String reason) {
+            return Counter.builder("http.admission.rejected").description("受け付けを断ったリクエストの数")
+                .tag("endpoint", name).tag("reason", reason).register(meterRegistry);
+        }
+    }
+
+    private final Map<String, Limits> limits = new HashMap<>();
+
+    // クライアントを見分けるヘッダー（未指定の場合は接続元のIPアドレス）
+    private final String clientHeader;
+
+    // Controllerのスライステストなど MeterRegistry が無い場合はグローバルのレジストリに記録する
+    public AdmissionControlFilter(Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        for (Endpoint endpoint : ENDPOINTS) {
+            limits.computeIfAbsent(endpoint.name(), name -> new Limits(name, environment, registry));
+        }
+        this.clientHeader = environment.getProperty("app.admission.client-header", "");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return endpoint(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Limits endpointLimits = limits.get(endpoint(request).name());
+
+        long waitNanos = endpointLimits.limiter.tryAcquire(client(request));
+        if (waitNanos > 0) {
+            endpointLimits.rateLimited.increment();
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, waitNanos, RATE_LIMITED_BODY);
+            return;
+        }
+        if (!endpointLimits.slots.tryAcquire()) {
+            endpointLimits.overloaded.increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1), OVERLOADED_BODY);
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            endpointLimits.slots.release();
+        }
+    }
+
+    private static Endpoint endpoint(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (Endpoint endpoint : ENDPOINTS) {
+            if (endpoint.matches(request.getMethod(), path)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    private String client(HttpServletRequest request) {
+        if (!clientHeader.isEmpty()) {
+            String value = request.getHeader(clientHeader);
+            if (value != null && !value.isBlank()) {
+                return value;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterNanos, byte[] body)
+            throws IOException {
+        // Retry-After は秒単位（切り上げ）
+        long retryAfterSeconds = Math.max(1, (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
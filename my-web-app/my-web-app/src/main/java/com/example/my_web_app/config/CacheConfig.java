@@ -0,0 +1,56 @@
+package com.example.my_web_app.config;
+
+import java.time.Duration;
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * 商品の読み取りキャッシュの設定
+ *
+ * 商品データは読み取りが書き込みより圧倒的に多いため、DB/JPAの手前でキャッシュする。
+ * - products       : 商品詳細（ID単位）。更新・削除・注文による在庫変更でそのIDだけ破棄する
+ * - productQueries : 一覧・ページ・検索の結果。商品が1件でも変わったら全て破棄する
+ * どちらも件数とTTLで上限を決め、ヒット率などの統計を Actuator (/actuator/metrics/cache.gets) に出す。
+ * 破棄はトランザクションのコミット後に行い、コミット前の古いデータが再びキャッシュされないようにする。
+ * キャッシュはトランザクションより外側で確認する（ヒットした場合はトランザクションを開始せず、DB接続も使わない）。
+ */
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+
+    public static final String PRODUCT_CACHE = "products";
+    public static final String PRODUCT_QUERY_CACHE = "productQueries";
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${app.cache.products.maximum-size:10000}") long productMaximumSize,
+            @Value("${app.cache.products.ttl:10m}") Duration productTtl,
+            @Value("${app.cache.product-queries.maximum-rows:200000}") long queryMaximumRows,
+            @Value("${app.cache.product-queries.ttl:1m}") Duration queryTtl) {
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache(PRODUCT_CACHE, Caffeine.newBuilder()
+            .maximumSize(productMaximumSize)
+            .expireAfterWrite(productTtl)
+            .recordStats()
+            .build());
+        // 結果の件数で重み付けする（全件一覧のような巨大な結果は上限を超えるためキャッシュされない）
+        cacheManager.registerCustomCache(PRODUCT_QUERY_CACHE, Caffeine.newBuilder()
+            .maximumWeight(queryMaximumRows)
+            .weigher((Object key, Object value) -> value instanceof Collection<?> rows ? Math.max(1, rows.size()) : 1)
+            .expireAfterWrite(queryTtl)
+            .recordStats()
+            .build());
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.my_web_app.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.my_web_app.model.Product;
+
+/**
+ * 商品IDのシーケンスを既存の商品IDの後ろに合わせる
+ *
+ * 商品IDをIDENTITYで採番していた頃のDBや、JDBCでIDを指定して投入したDBでは、
+ * シーケンスが既存のIDより小さい値を返してIDが重複してしまう。
+ * 起動時（Webサーバーが受け付けを始める前）に確認し、必要ならシーケンスを進める。
+ */
+@Component
+public class ProductSequenceAligner implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSequenceAligner.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        align();
+    }
+
+    /**
+     * シーケンスから払い出されるIDが既存の最大IDより大きくなるようにする
+     */
+    public void align() {
+        Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from product", Long.class);
+        if (maxId == 0) {
+            return;
+        }
+        // Hibernate は取得した値 v に対して v - (件数 - 1) 〜 v のIDを使う
+        Long next = jdbcTemplate.queryForObject("select next value for product_seq", Long.class);
+        if (next - (Product.ID_ALLOCATION_SIZE - 1) > maxId) {
+            return;
+        }
+        long restart = maxId + Product.ID_ALLOCATION_SIZE + 1;
+        jdbcTemplate.execute("alter sequence product_seq restart with " + restart);
+        log.info("商品IDのシーケンスを既存の商品ID（最大 {}）の後ろに合わせました", maxId);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.my_web_app.config;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * クライアントごとのトークンバケット（ロックを使わない）
+ *
+ * 1秒あたり rate 個のトークンが貯まり、最大 burst 個まで貯められる。
+ * クライアントごとに「次のトークンが使えるようになる時刻」を1つの AtomicLong で持ち、CASで進める（GCRA）。
+ * しばらく使われていないクライアントのバケットは満タンと同じなので、メモリから消してよい。
+ */
+public class TokenBucketLimiter {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    // トークン1個が貯まる間隔
+    private final long intervalNanos;
+    // バーストとして先取りできる時間（(burst - 1) 個分）
+    private final long toleranceNanos;
+    // クライアント -> 理論上の次の到着時刻（System.nanoTime 基準）
+    private final Cache<String, AtomicLong> buckets;
+
+    public TokenBucketLimiter(double ratePerSecond, int burst, long maximumClients) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate は0より大きく、burst は1以上にしてください。");
+        }
+        this.intervalNanos = (long) (NANOS_PER_SECOND / ratePerSecond);
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(maximumClients)
+            // バケットが満タンになるまで使われなければ、消しても結果は変わらない
+            .expireAfterAccess(Duration.ofNanos(Math.max(intervalNanos * burst, NANOS_PER_SECOND)))
+            .build();
+    }
+
+    /**
+     * トークンを1つ使う
+     * @return 0: 使えた / 正の値: トークンが貯まるまでの待ち時間（ナノ秒）
+     */
+    public long tryAcquire(String client) {
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(client, key -> new AtomicLong(now));
+        while (true) {
+            long arrival = bucket.get();
+            long base = arrival - now > 0 ? arrival : now;
+            long ahead = base - now;
+            if (ahead > toleranceNanos) {
+                return ahead - toleranceNanos;
+            }
+            if (bucket.compareAndSet(arrival, base + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+}
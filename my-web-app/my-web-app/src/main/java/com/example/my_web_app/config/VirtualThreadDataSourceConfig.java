@@ -0,0 +1,46 @@
+package com.example.my_web_app.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * 仮想スレッドモード（spring.threads.virtual.enabled=true）用の接続プール設定
+ *
+ * プラットフォームスレッドではTomcatのスレッド数(200)が同時実行数の上限になるが、
+ * 仮想スレッドではリクエストごとにスレッドが作られるため、接続プールが実質的な上限になる。
+ * プールが空くのを長時間待つリクエストが積み上がらないよう、接続待ちのタイムアウトを短くし、
+ * プールサイズはCPUコア数を基準に決める（H2などのDB側の並列度を超えて増やしても速くならない）。
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadDataSourceConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadDataSourceConfig.class);
+
+    // BeanPostProcessor は他のBeanより先に作られるため static で定義する
+    @Bean
+    static BeanPostProcessor virtualThreadHikariTuner(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    int poolSize = environment.getProperty("app.datasource.virtual.maximum-pool-size", Integer.class,
+                        Runtime.getRuntime().availableProcessors() * 2);
+                    long connectionTimeout = environment.getProperty("app.datasource.virtual.connection-timeout", Long.class, 2_000L);
+                    dataSource.setMaximumPoolSize(poolSize);
+                    dataSource.setConnectionTimeout(connectionTimeout);
+                    log.info("仮想スレッドモード: 接続プールサイズ={}, 接続待ちタイムアウト={}ms", poolSize, connectionTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+}
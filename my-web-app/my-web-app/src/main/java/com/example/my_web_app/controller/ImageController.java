@@ -0,0 +1,151 @@
+package com.example.my_web_app.controller;
+
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+
+import com.example.my_web_app.service.ImageStorageService;
+import com.example.my_web_app.service.ImageStorageService.StoredImage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/images")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ImageController {
+
+    // Tomcat の sendfile（カーネル内でファイルをソケットへ直接コピーする）を使うためのリクエスト属性
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // URLが内容のハッシュなので、同じURLの画像は変わらない。ブラウザには1年間キャッシュさせる
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    /**
+     * 商品画像の取得
+     * URL例: GET http://localhost:8080/api/images/{sha256}              （中サイズ）
+     * URL例: GET http://localhost:8080/api/images/{sha256}?variant=thumb （一覧用のサムネイル）
+     * URL例: GET http://localhost:8080/api/images/{sha256}?variant=original
+     *
+     * 指定したサイズがまだ生成されていない場合は元画像を返す（この場合はキャッシュさせない）。
+     * ETag / If-None-Match と Range（1範囲のみ）に対応する。
+     */
+    @GetMapping("/{key}")
+    public void getImage(
+            @PathVariable String key,
+            @RequestParam(value = "variant", defaultValue = "medium") String variant,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        ImageStorageService.Variant requestedVariant = ImageStorageService.Variant.from(variant);
+        Optional<StoredImage> image = imageStorageService.resolve(key, requestedVariant);
+        if (image.isEmpty()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        Path file = image.get().file();
+
+        // 縮小版の代わりに元画像を返す場合は、縮小版ができたら取り直せるようにキャッシュさせない
+        String etag = "\"" + key + "-" + file.getFileName() + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+            (image.get().requested() ? IMMUTABLE : CacheControl.noCache()).getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return; // 304 Not Modified（ETag ヘッダーも設定済み）
+        }
+
+        long length = Files.size(file);
+        long start = 0;
+        long end = length - 1;
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // 複数範囲の指定は扱わず、全体を返す（RFC 9110 で許されている）
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                try {
+                    start = range.getRangeStart(length);
+                    end = range.getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        MediaType contentType = MediaTypeFactory.getMediaType(file.getFileName().toString())
+            .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        response.setContentType(contentType.toString());
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // Tomcat にファイルの送信を任せる（ユーザー空間にデータをコピーしない）
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        // sendfile が使えない場合も、FileChannel.transferTo でヒープにファイルを読み込まずに送る
+        try (FileChannel channel = FileChannel.open(file)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += channel.transferTo(position, end + 1 - position, out);
+            }
+        }
+    }
+
+    //例外処理
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleIllegalArgumentException(IllegalArgumentException e) {
+        Map<String, String> errorDetails = new HashMap<>();
+        errorDetails.put("message", e.getMessage());
+
+        // 400 Bad Request とエラーメッセージを返す
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -1,17 +1,30 @@
 package com.example.my_web_app.controller;
 
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 
+import com.example.my_web_app.IdempotencyKeyException;
+import com.example.my_web_app.OrderBusyException;
+import com.example.my_web_app.OrderNotDurableException;
+import com.example.my_web_app.ProductNotFoundException;
 import com.example.my_web_app.model.Order;
+import com.example.my_web_app.service.IdempotencyService;
+import com.example.my_web_app.service.JournaledOrderService;
 import com.example.my_web_app.service.OrderService;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/orders")
 @CrossOrigin(origins = "http://localhost:5173")
@@ -20,9 +33,94 @@ public class OrderController {
     @Autowired
     private OrderService orderService;
 
+    // 注文ジャーナルを使う場合だけ存在する（app.orders.journal.enabled=true）
+    @Autowired(required = false)
+    private JournaledOrderService journaledOrderService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    /**
+     * 注文 (POST /api/orders)
+     * 通常は注文をDBに登録して 201 Created を返す。
+     * 注文ジャーナルを使う場合はジャーナルに記録した時点で 202 Accepted を返す（注文IDはまだ無い）。
+     * Idempotency-Key ヘッダーを付けた場合、同じキーの再送には注文をやり直さずに最初の結果を返す。
+     */
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    public Order orderProduct(@RequestBody Order order) {
-    	return orderService.orderProduct(order);
+    public ResponseEntity<?> orderProduct(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody Order order) {
+        return idempotencyService.execute(idempotencyKey, order, () -> {
+            if (journaledOrderService != null) {
+                return ResponseEntity.accepted().body(journaledOrderService.accept(List.of(order)).get(0));
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(orderService.orderProduct(order));
+        });
+    }
+
+    /**
+     * まとめ注文 (POST /api/orders/batch)
+     * 複数の注文明細を1トランザクションで登録する。1明細でもエラーの場合は全体が登録されない。
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> orderProducts(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody List<Order> orders) {
+        return idempotencyService.execute(idempotencyKey, orders, () -> {
+            if (journaledOrderService != null) {
+                return ResponseEntity.accepted().body(journaledOrderService.accept(orders));
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(orderService.orderProducts(orders));
+        });
+    }
+
+    //例外処理
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleIllegalArgumentException(IllegalArgumentException e) {
+        Map<String, String> errorDetails = new HashMap<>();
+        errorDetails.put("message", e.getMessage());
+
+        // 400 Bad Request とエラーメッセージを返す
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(ProductNotFoundException.class)
+    public ResponseEntity<Map<String, String>> handleNotFoundException(ProductNotFoundException e) {
+        Map<String, String> errorDetails = new HashMap<>();
+        errorDetails.put("message", e.getMessage());
+
+        // 404 NOT_FOUND ステータスコードを返す
+        return new ResponseEntity<>(errorDetails, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(IdempotencyKeyException.class)
+    public ResponseEntity<Map<String, String>> handleIdempotencyKeyException(IdempotencyKeyException e) {
+        Map<String, String> errorDetails = new HashMap<>();
+        errorDetails.put("message", e.getMessage());
+
+        // 409 Conflict（処理中）または 422 Unprocessable Entity（内容が異なる）を返す
+        return new ResponseEntity<>(errorDetails, e.getStatus());
+    }
+
+    // 在庫の引き当てが混み合っている（ロック待ちの上限を超えた）場合
+    @ExceptionHandler(OrderBusyException.class)
+    public ResponseEntity<Map<String, String>> handleOrderBusyException(OrderBusyException e) {
+        Map<String, String> errorDetails = new HashMap<>();
+        errorDetails.put("message", e.getMessage());
+
+        // 503 Service Unavailable（1秒後の再試行を促す）
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(errorDetails);
+    }
+
+    // ジャーナルに追記済みだが、ディスクへの書き出しを時間内に確認できなかった場合
+    @ExceptionHandler(OrderNotDurableException.class)
+    public ResponseEntity<Map<String, String>> handleOrderNotDurableException(OrderNotDurableException e) {
+        Map<String, String> errorDetails = new HashMap<>();
+        errorDetails.put("message", e.getMessage());
+
+        // 注文は後でDBに登録されるため 202 Accepted を返す（再試行は促さない）
+        return new ResponseEntity<>(errorDetails, HttpStatus.ACCEPTED);
     }
-}
\ No newline at end of file
+}
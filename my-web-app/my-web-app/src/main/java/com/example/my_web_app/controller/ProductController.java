@@ -3,18 +3,41 @@ package com.example.my_web_app.controller;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.beans.factory.annotation.Autowired;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import jakarta.servlet.http.HttpServletResponse;
 
 import com.example.my_web_app.ProductNotFoundException;
 import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductPatch;
+import com.example.my_web_app.model.ProductView;
+import com.example.my_web_app.repository.ProductSortKey;
+import com.example.my_web_app.service.CatalogChangeTracker;
+import com.example.my_web_app.service.ProductChangeStream;
+import com.example.my_web_app.service.ProductImportService;
+import com.example.my_web_app.service.ProductImportService.ImportResult;
 import com.example.my_web_app.service.ProductService;
+import com.example.my_web_app.service.ProductService.PatchResult;
+import com.example.my_web_app.service.ShardedStockService;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController // コントローラー層
 @RequestMapping("/api/products") // このコントローラーのベースパス
@@ -26,30 +49,171 @@ public class ProductController {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CatalogChangeTracker catalogChangeTracker;
+
+    @Autowired
+    private ShardedStockService shardedStockService;
+
+    @Autowired
+    private ProductChangeStream productChangeStream;
+
+    // ページングの1ページあたりの件数（デフォルト / 上限）
+    private static final int DEFAULT_PAGE_LIMIT = 50;
+    private static final int MAX_PAGE_LIMIT = 500;
+
+    // 次ページの after に渡すIDを返すレスポンスヘッダー
+    private static final String NEXT_AFTER_HEADER = "X-Next-After";
+
+    // NDJSON (1行1JSON) のメディアタイプ
+    private static final String NDJSON = "application/x-ndjson";
+
+    // JSON Merge Patch のメディアタイプ（PATCH では application/json と同じに扱う）
+    private static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+
     /**
      * 【GET】商品の一覧取得 または 名前による検索
-     * URL例: GET http://localhost:8080/api/products?name=ノートPC
+     * URL例: GET http://localhost:8080/api/products?name=ノートPC （名前・説明文の部分一致、関連度順）
      * URL例: GET http://localhost:8080/api/products
+     * URL例: GET http://localhost:8080/api/products?sort=price,desc&limit=20&after=15
+     *
+     * after / limit / sort のいずれかを指定するとキーセットページングになる。
+     * 続きのページがある場合は X-Next-After ヘッダーに次の after を返す。
+     * 一覧が前回から変わっていなければ（If-None-Match / If-Modified-Since）DBを読まずに 304 を返す。
+     * fields を指定するとその項目だけを返す（例: ?fields=id,name,price）。
+     * Accept: application/cbor の場合はCBOR（バイナリ形式）で返す。
      */
     //RequestParamパターン（URLに埋め込む）
     @GetMapping
-    public List<Product> getProducts(
-        @RequestParam(value = "name", required = false) String name) {
-
-        // nameパラメータが指定されていない、または空の場合は全件検索
-        if (name == null || name.isEmpty()) {
-            return productService.findAll();
-        } else {
-            // nameパラメータがある場合は、Serviceに名前検索を依頼
-            return productService.findProductsByName(name);
+    public ResponseEntity<List<?>> getProducts(
+        @RequestParam(value = "name", required = false) String name,
+        @RequestParam(value = "after", required = false) Long after,
+        @RequestParam(value = "limit", required = false) Integer limit,
+        @RequestParam(value = "sort", required = false) String sort,
+        @RequestParam(value = "fields", required = false) String fields,
+        WebRequest webRequest,
+        HttpServletResponse servletResponse) {
+
+        // JSON / CBOR のどちらを返すかは Accept で決まる（ブラウザなどのキャッシュが取り違えないようにする）
+        // 304 にも同じ Vary が必要なため、checkNotModified の前に設定する
+        servletResponse.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+
+        // 読み込む前の ETag を使う（読み込み中に変更があれば、次のリクエストで取り直しになる）
+        if (webRequest.checkNotModified(catalogChangeTracker.etag(), catalogChangeTracker.lastModified().toEpochMilli())) {
+            return null; // 304 Not Modified（ETag / Last-Modified ヘッダーは設定済み）
+        }
+
+        int pageLimit = limit == null ? DEFAULT_PAGE_LIMIT : limit;
+        if (pageLimit < 1 || pageLimit > MAX_PAGE_LIMIT) {
+            throw new IllegalArgumentException("limit は1〜" + MAX_PAGE_LIMIT + "の範囲で指定してください。");
+        }
+        Set<ProductFields> projection = fields == null || fields.isEmpty() ? null : ProductFields.parse(fields);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        // nameパラメータがある場合は、名前・説明文の部分一致検索（関連度順に最大 limit 件）
+        if (name != null && !name.isEmpty()) {
+            return response.body(body(productService.searchProducts(name, pageLimit), projection));
+        }
+
+        // ページング指定がない場合は従来どおり全件検索
+        if (after == null && limit == null && sort == null) {
+            return response.body(body(productService.findAll(), projection));
+        }
+
+        // sort は「キー」または「キー,asc|desc」の形式（例: price,desc）
+        ProductSortKey sortKey = ProductSortKey.ID;
+        boolean descending = false;
+        if (sort != null && !sort.isEmpty()) {
+            String[] parts = sort.split(",");
+            sortKey = ProductSortKey.from(parts[0].trim());
+            descending = parts.length > 1 && parts[1].trim().equalsIgnoreCase("desc");
+        }
+
+        List<ProductView> page = productService.findPage(after, pageLimit, sortKey, descending);
+
+        if (page.size() == pageLimit) {
+            response.header(NEXT_AFTER_HEADER, String.valueOf(page.get(page.size() - 1).id()));
         }
+        return response.body(body(page, projection));
+    }
+
+    // fields の指定がなければ商品をそのまま返す
+    private static List<?> body(List<ProductView> products, Set<ProductFields> projection) {
+        return projection == null ? products : ProductFields.project(products, projection);
+    }
+
+    /**
+     * 【GET】全商品をNDJSON（1行1商品）で出力する
+     * DBカーソルから読んだ行をそのまま書き出すため、商品数が増えてもメモリ使用量は増えない。
+     * URL例: GET http://localhost:8080/api/products/export
+     */
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportProducts() {
+        StreamingResponseBody body = out -> productService.streamAll(product -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(product));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    /**
+     * 【GET】商品・在庫の変更をプッシュで受け取る（Server-Sent Events）
+     * 一覧をポーリングする代わりに使う。変更は100msごとにまとめて "changes" イベントで届く
+     * （data: {"products": [変更後の商品...], "deleted": [削除された商品ID...]}）。
+     * 接続後（再接続後）は一覧を取得し直し、以降はこのイベントで差分を反映する。
+     * URL例: GET http://localhost:8080/api/products/stream （ブラウザでは new EventSource(url)）
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges() {
+        return productChangeStream.subscribe();
+    }
+
+    /**
+     * 【POST】商品の一括登録（CSV または NDJSON）
+     * リクエストボディを読みながら1,000件ずつまとめて登録するため、大きなファイルでもメモリに載せない。
+     * CSVは1行目に列名（name, price, stock, description）が必要。文字コードは Content-Type の charset（省略時UTF-8）。
+     * URL例: POST http://localhost:8080/api/products/import （Content-Type: text/csv または application/x-ndjson）
+     */
+    @PostMapping(value = "/import", consumes = { "text/csv", NDJSON })
+    public ImportResult importProducts(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) throws IOException {
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        ProductImportService.Format format = mediaType.isCompatibleWith(MediaType.parseMediaType(NDJSON))
+            ? ProductImportService.Format.NDJSON
+            : ProductImportService.Format.CSV;
+        Charset charset = mediaType.getCharset() != null ? mediaType.getCharset() : StandardCharsets.UTF_8;
+        return productImportService.importProducts(body, charset, format);
     }
 
     //PathVariableパターン
     //URL例: GET http://localhost:8080/api/products/1
+    // ETag は商品のバージョンと在庫数から作る。キャッシュ済みの商品で確認できるため、304 の場合はDBもJSON変換も通らない
+    // （在庫を分割した商品は注文でバージョン・更新日時が変わらないため、在庫数を含め、Last-Modified は返さない）
     @GetMapping("/{id}")
-    public Optional<Product> getProductsById(@PathVariable Long id) {
-            return productService.findProductsById(id);
+    public ResponseEntity<Product> getProductsById(@PathVariable Long id, WebRequest webRequest) {
+        Optional<Product> product = productService.findProductsById(id);
+        if (product.isEmpty()) {
+            return ResponseEntity.notFound().build(); // 存在しない・削除済みの商品は 404
+        }
+        Instant lastModified = product.get().getStockSlots() == 0 ? product.get().getLastModified() : null;
+        if (webRequest.checkNotModified(
+                "W/\"p" + id + "-" + product.get().getVersion() + "-" + product.get().getStock() + "\"",
+                lastModified != null ? lastModified.toEpochMilli() : -1)) {
+            return null; // 304 Not Modified
+        }
+        return ResponseEntity.ok(product.get());
     }
 
     //商品登録
@@ -100,6 +264,36 @@ public class ProductController {
         }
     }
 
+    /**
+     * 商品の部分更新 (PATCH)
+     * 指定した項目（name / price / stock / description）だけを変更する。省略した項目は変更しない。
+     * URL例: PATCH http://localhost:8080/api/products/1 （{"price": 980}）
+     */
+    @PatchMapping(value = "/{id}", consumes = { MediaType.APPLICATION_JSON_VALUE, MERGE_PATCH_JSON })
+    public Product patchProduct(@PathVariable Long id, @RequestBody ProductPatch patch) {
+        return productService.patchProduct(id, patch);
+    }
+
+    /**
+     * 商品の一括の部分更新 (PATCH)
+     * 商品ごとに id と変更する項目を指定する（最大10,000件）。1件でもエラーの場合は何も更新しない。
+     * URL例: PATCH http://localhost:8080/api/products （[{"id": 1, "price": 980}, {"id": 2, "stock": 50}]）
+     */
+    @PatchMapping(consumes = { MediaType.APPLICATION_JSON_VALUE, MERGE_PATCH_JSON })
+    public PatchResult patchProducts(@RequestBody List<ProductPatch> patches) {
+        return productService.patchProducts(patches);
+    }
+
+    /**
+     * 在庫の分割（セール中の人気商品の注文を並行に処理する）
+     * 在庫を slots 個のスロットに分け、注文はスロットごとに引き当てる。slots=0 で分割をやめる。
+     * URL例: PUT http://localhost:8080/api/products/1/stock-slots?slots=16
+     */
+    @PutMapping("/{id}/stock-slots")
+    public Product reshardStock(@PathVariable Long id, @RequestParam("slots") int slots) {
+        return shardedStockService.reshard(id, slots);
+    }
+
     /**
      * 商品の削除 (DELETE)
      * 指定された ID のリソースを削除する。
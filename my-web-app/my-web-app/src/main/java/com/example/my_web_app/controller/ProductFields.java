@@ -0,0 +1,67 @@
+package com.example.my_web_app.controller;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.example.my_web_app.model.ProductView;
+
+/**
+ * 一覧で返す項目の指定（?fields=id,name,price）
+ * 指定した項目だけを変換するため、説明文など長い項目を省くとレスポンスもJSON変換も小さくなる。
+ */
+enum ProductFields {
+    ID("id", ProductView::id),
+    NAME("name", ProductView::name),
+    PRICE("price", ProductView::price),
+    STOCK("stock", ProductView::stock),
+    DESCRIPTION("description", ProductView::description),
+    IMAGE_URL("imageUrl", ProductView::imageUrl),
+    VERSION("version", ProductView::version),
+    LAST_MODIFIED("lastModified", ProductView::lastModified);
+
+    // JSONの項目名
+    private final String property;
+    private final Function<ProductView, Object> getter;
+
+    ProductFields(String property, Function<ProductView, Object> getter) {
+        this.property = property;
+        this.getter = getter;
+    }
+
+    /**
+     * クエリパラメータ（例: "id,name,price"）から項目の集合を作る（JSONの項目名で指定。大文字小文字は区別しない）
+     */
+    static Set<ProductFields> parse(String value) {
+        Set<ProductFields> fields = EnumSet.noneOf(ProductFields.class);
+        for (String name : value.split(",")) {
+            fields.add(from(name.trim()));
+        }
+        return fields;
+    }
+
+    /**
+     * 指定した項目だけを持つ形に変換する（項目の順序は ProductView と同じ）
+     */
+    static List<Map<String, Object>> project(List<ProductView> products, Set<ProductFields> fields) {
+        return products.stream().map(product -> {
+            Map<String, Object> row = new LinkedHashMap<>(fields.size() * 2);
+            for (ProductFields field : fields) {
+                row.put(field.property, field.getter.apply(product));
+            }
+            return row;
+        }).toList();
+    }
+
+    private static ProductFields from(String name) {
+        for (ProductFields field : values()) {
+            if (field.property.equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("fields に指定できない項目です: " + name);
+    }
+}
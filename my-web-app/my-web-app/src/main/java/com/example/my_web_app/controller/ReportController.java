@@ -0,0 +1,80 @@
+package com.example.my_web_app.controller;
+
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.example.my_web_app.service.SalesAggregates;
+import com.example.my_web_app.service.SalesAggregates.HourlySales;
+import com.example.my_web_app.service.SalesAggregates.ProductSales;
+import com.example.my_web_app.service.SalesAggregates.Ranking;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 売上レポート
+ * 集計済みの値を返すため、注文の件数が増えても応答時間は変わらない。
+ */
+@RestController
+@RequestMapping("/api/reports")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ReportController {
+
+    // 売れ筋の件数（デフォルト / 上限）
+    private static final int DEFAULT_TOP_LIMIT = 10;
+    private static final int MAX_TOP_LIMIT = 100;
+
+    @Autowired
+    private SalesAggregates salesAggregates;
+
+    /**
+     * 売れ筋の商品
+     * URL例: GET http://localhost:8080/api/reports/top-sellers?limit=10&by=revenue
+     * by は units（販売数順、デフォルト）または revenue（売上順）
+     */
+    @GetMapping("/top-sellers")
+    public List<ProductSales> topSellers(
+        @RequestParam(value = "limit", defaultValue = "" + DEFAULT_TOP_LIMIT) int limit,
+        @RequestParam(value = "by", defaultValue = "units") String by) {
+
+        if (limit < 1 || limit > MAX_TOP_LIMIT) {
+            throw new IllegalArgumentException("limit は1〜" + MAX_TOP_LIMIT + "の範囲で指定してください。");
+        }
+        return salesAggregates.topSellers(limit, Ranking.from(by));
+    }
+
+    /**
+     * 時間帯ごとの売上（1時間単位。注文のない時間帯は0）
+     * URL例: GET http://localhost:8080/api/reports/revenue-by-hour?from=2024-06-01T00:00:00Z&to=2024-06-02T00:00:00Z
+     * 省略した場合は直近24時間
+     */
+    @GetMapping("/revenue-by-hour")
+    public List<HourlySales> revenueByHour(
+        @RequestParam(value = "from", required = false) Instant from,
+        @RequestParam(value = "to", required = false) Instant to) {
+
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofHours(24));
+        return salesAggregates.revenueByHour(start, end);
+    }
+
+    //例外処理
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleIllegalArgumentException(IllegalArgumentException e) {
+        Map<String, String> errorDetails = new HashMap<>();
+        errorDetails.put("message", e.getMessage());
+
+        // 400 Bad Request とエラーメッセージを返す
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.my_web_app.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 注文・在庫引き当てのメトリクス
+ * - orders.accepted              : 受け付けた注文明細の数
+ * - orders.rejected{reason}      : 断った注文の数（insufficient_stock / not_found / invalid / busy）
+ * - orders.stock.conflicts       : 同じ商品の別の注文を待ってから在庫を引き当てた回数（人気商品の競合）
+ * - orders.stock.lock.wait       : 在庫引き当てのロック待ち時間
+ * - orders.idempotent.replayed   : Idempotency-Key の再送に保存済みの結果を返した回数
+ */
+@Component
+public class OrderMetrics {
+
+    public static final String INSUFFICIENT_STOCK = "insufficient_stock";
+    public static final String NOT_FOUND = "not_found";
+    public static final String INVALID = "invalid";
+    public static final String BUSY = "busy";
+
+    private final MeterRegistry meterRegistry;
+    private final Counter accepted;
+    private final Counter conflicts;
+    private final Timer lockWait;
+    private final Counter replayed;
+
+    public OrderMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.accepted = Counter.builder("orders.accepted").description("受け付けた注文明細の数").register(meterRegistry);
+        this.conflicts = Counter.builder("orders.stock.conflicts").description("在庫引き当てでロック待ちが発生した回数").register(meterRegistry);
+        this.lockWait = Timer.builder("orders.stock.lock.wait").description("在庫引き当てのロック待ち時間")
+            .publishPercentileHistogram().register(meterRegistry);
+        this.replayed = Counter.builder("orders.idempotent.replayed").description("再送に保存済みの結果を返した回数").register(meterRegistry);
+    }
+
+    public void accepted(int lines) {
+        accepted.increment(lines);
+    }
+
+    public void rejected(String reason) {
+        Counter.builder("orders.rejected").description("断った注文の数").tag("reason", reason)
+            .register(meterRegistry).increment();
+    }
+
+    public void conflict(long waitNanos) {
+        conflicts.increment();
+        lockWait.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void replayed() {
+        replayed.increment();
+    }
+}
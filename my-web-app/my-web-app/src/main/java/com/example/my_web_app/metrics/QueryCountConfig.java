@@ -0,0 +1,31 @@
+package com.example.my_web_app.metrics;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * アプリケーションの DataSource を QueryCountingDataSource で包む
+ * ログに出すSQLの割合は app.db.sql-sample-rate（0〜1、デフォルト0）で指定する。
+ */
+@Configuration
+public class QueryCountConfig {
+
+    // BeanPostProcessor は他のBeanより先に作られるため static で定義する
+    @Bean
+    static BeanPostProcessor queryCountingDataSourceWrapper(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof QueryCountingDataSource)) {
+                    double sampleRate = environment.getProperty("app.db.sql-sample-rate", Double.class, 0.0);
+                    return new QueryCountingDataSource(dataSource, sampleRate);
+                }
+                return bean;
+            }
+        };
+    }
+}
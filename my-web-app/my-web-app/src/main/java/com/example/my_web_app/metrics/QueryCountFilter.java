@@ -0,0 +1,51 @@
+package com.example.my_web_app.metrics;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * リクエストごとに実行したSQLの数（JPA・JdbcTemplate の両方。QueryCountingDataSource で数える）を
+ * db.queries.per.request として記録する。リクエストのスレッドで実行したSQLだけを数え、
+ * バックグラウンドのスレッド（注文ジャーナルのDB登録など）のSQLは含まない。
+ * タグの uri はURLそのものではなく /api/products/{id} のようなパターン（種類が増えすぎないように）。
+ */
+@Component
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+
+    // Controllerのスライステストなど MeterRegistry が無い場合はグローバルのレジストリに記録する
+    public QueryCountFilter(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryCountingDataSource.reset();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder("db.queries.per.request")
+                .description("1リクエストで実行されたSQLの数")
+                .tag("method", request.getMethod())
+                .tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(QueryCountingDataSource.current());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.my_web_app.metrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * 実行したSQLを数える DataSource（リクエストごとのクエリ数の計測用）
+ *
+ * JPA（Hibernate）と JdbcTemplate のどちらから発行したSQLも数えるため、接続プールの DataSource を包み、
+ * Statement の execute / executeQuery / executeUpdate / executeBatch の呼び出しを数える（バッチは1回と数える）。
+ * 数はスレッドごとに持ち、QueryCountFilter がリクエストの開始時に0に戻して終了時に記録する。
+ * また、一部のSQLだけを抜き取ってログに出す（show-sql で全件出すと性能が落ちるため）。
+ */
+public class QueryCountingDataSource extends DelegatingDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryCountingDataSource.class);
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    // ログに出すSQLの割合（0〜1）
+    private final double sampleRate;
+
+    public QueryCountingDataSource(DataSource target, double sampleRate) {
+        super(target);
+        this.sampleRate = sampleRate;
+    }
+
+    // 現在のスレッドの数を0に戻す
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    // 現在のスレッドで reset() 以降に実行されたSQLの数
+    public static int current() {
+        return COUNT.get()[0];
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countingConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countingConnection(super.getConnection(username, password));
+    }
+
+    // Statement を作るメソッドの戻り値を、実行を数える Statement に置き換える
+    private Connection countingConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+                if (isIdentityMethod(method)) {
+                    return invokeIdentityMethod(proxy, method, args);
+                }
+                Object result = invoke(connection, method, args);
+                if (result instanceof Statement statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                    // prepareStatement / prepareCall は最初の引数がSQL（createStatement は実行時に渡される）
+                    String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                    return countingStatement(statement, method.getReturnType(), sql, (Connection) proxy);
+                }
+                return result;
+            });
+    }
+
+    private Object countingStatement(Statement statement, Class<?> type, String preparedSql, Connection connection) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+            (proxy, method, args) -> {
+                if (isIdentityMethod(method)) {
+                    return invokeIdentityMethod(proxy, method, args);
+                }
+                if (method.getName().equals("getConnection")) {
+                    return connection; // 包む前の接続を外に出さない
+                }
+                if (method.getName().startsWith("execute")) {
+                    COUNT.get()[0]++;
+                    if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+                        log.info("SQL (sampled): {}", args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql);
+                    }
+                }
+                return invoke(statement, method, args);
+            });
+    }
+
+    private static boolean isIdentityMethod(Method method) {
+        return method.getDeclaringClass() == Object.class && !method.getName().equals("toString");
+    }
+
+    // equals / hashCode はプロキシ自身で判定する（包んだ先に渡すと proxy.equals(proxy) が false になる）
+    private static Object invokeIdentityMethod(Object proxy, Method method, Object[] args) {
+        return method.getName().equals("equals") ? proxy == args[0] : System.identityHashCode(proxy);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause(); // SQLException などをそのまま投げる
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.my_web_app.model;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Idempotency-Key ごとの注文の結果（app.orders.idempotency.persistent=true の場合だけ使う）
+ * 再起動後や、メモリから消えた後の再送にも最初の結果を返すために保存する。
+ * 読み書きは IdempotencyService がJDBCで行う（テーブル定義のためのエンティティ）。
+ */
+@Entity
+@Table(name = "idempotency_record")
+@Getter
+@Setter
+public class IdempotencyRecord {
+
+    @Id
+    @Column(length = 255)
+    private String idempotencyKey;
+
+    // リクエスト内容のハッシュ（同じキーで別の内容が送られた場合の検出）
+    @Column(length = 64, nullable = false)
+    private String requestHash;
+
+    // レスポンスのHTTPステータス（0: 処理中）
+    private int status;
+
+    // レスポンスのJSON
+    @Lob
+    private byte[] responseBody;
+
+    private Instant createdAt;
+}
@@ -1,5 +1,11 @@
 package com.example.my_web_app.model;
 
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -24,7 +30,19 @@ public class Order {
     private int quantity;
     private int total;
 
+    // 注文を受け付けた日時（サーバーで設定する。売上の集計に使う）
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant orderedAt;
+
+    // 注文ジャーナル経由で登録した注文の連番（同じ注文を二重に登録しないため。同期登録の注文は null）
+    @JsonIgnore
+    @Column(unique = true)
+    private Long journalSeq;
+
     // コンストラクタ（Eclipseで自動生成できます: Source -> Generate Constructor...）
+    // JPAがDBから読み込んだ行を詰めるために引数なしのコンストラクタが必要
+    public Order() {}
+
 	public Order(Long id, Long productId, String productName, int unitPrice, int quantity, int total) {
 		super();
 		this.id = id;
@@ -1,9 +1,22 @@
 package com.example.my_web_app.model;
 
+import java.time.Instant;
+
+import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.SQLRestriction;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 
 import lombok.Getter;
 //import lombok.Getter;
@@ -11,19 +24,60 @@ import lombok.Getter;
 import lombok.Setter;
 
 @Entity // データベースのテーブルに対応するクラスであることを示す
+// 削除済み（削除の印が付いた）商品はJPAの検索・読み込みに出てこない（JDBCのSQLでは条件を書く）
+@SQLRestriction(Product.NOT_DELETED)
 @Getter
 @Setter
 public class Product {
 
+    // IDをシーケンスから何件分まとめて取得するか（登録のたびにシーケンスを呼ばない）
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // 商品名・説明文の最大文字数（product.name / description の varchar(255)）
+    public static final int MAX_TEXT_LENGTH = 255;
+
+    // 削除されていない商品の条件（SQL）
+    public static final String NOT_DELETED = "deleted_at is null";
+
+    // 在庫スロットの合計（在庫を分割していない商品は0。分割していない商品ではスロットを読まない）
+    public static final String SLOT_STOCK_FORMULA =
+        "(case when stock_slots = 0 then 0"
+            + " else (select coalesce(sum(s.stock), 0) from product_stock_slot s where s.product_id = id) end)";
+
     @Id // 主キー（テーブルの一意な識別子）
-    @GeneratedValue(strategy = GenerationType.IDENTITY) // IDを自動生成する設定
+    // IDはシーケンスで採番する（IDENTITYと違いINSERT前にIDが決まるため、INSERTをJDBCバッチで送れる）
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     private String name;
     private int price;
+    // 在庫（分割している商品の場合は分割していない残りの分。合計は getStock() で返す）
     private int stock;
     private String description;
     private String imageUrl;
 
+    @Version // 楽観ロック用のバージョン（更新のたびに+1され、古いデータでの上書きを検出する）
+    @Column(columnDefinition = "bigint default 0 not null") // 既存の行は0で埋める
+    private long version;
+
+    // 最後に変更された日時（条件付きGETの Last-Modified に使う。JDBC/JPQLで直接更新する場合も設定する）
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant lastModified;
+
+    // 在庫を分割しているスロットの数（0: 分割していない。ProductStockSlot を参照）
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(columnDefinition = "integer default 0 not null") // 既存の行は0で埋める
+    private int stockSlots;
+
+    // スロットに分割された在庫の合計（読み取り専用）
+    @JsonIgnore
+    @Formula(SLOT_STOCK_FORMULA)
+    private int slotStock;
+
+    // 削除された日時（null: 削除されていない）。行は ProductPurger が後でまとめて削除する
+    @JsonIgnore
+    private Instant deletedAt;
+
     // コンストラクタ（Eclipseで自動生成できます: Source -> Generate Constructor...）
     public Product() {}
 
@@ -33,4 +87,17 @@ public class Product {
         this.stock = stock;
         this.description = description;
     }
+
+    /**
+     * 在庫の合計（分割していない分 + 各スロットの在庫）
+     */
+    public int getStock() {
+        return stock + slotStock;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = Instant.now();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.example.my_web_app.model;
+
+/**
+ * 商品の部分更新（PATCH）の内容
+ *
+ * 指定した項目だけを変更する。null（JSONで省略した項目）は変更しない。
+ * 一括更新では id で対象の商品を指定する（1商品の PATCH では URL のIDを使い、id は無視する）。
+ */
+public record ProductPatch(
+    Long id,
+    String name,
+    Integer price,
+    Integer stock,
+    String description) {
+
+    /**
+     * 変更する項目が1つもないか
+     */
+    public boolean isEmpty() {
+        return name == null && price == null && stock == null && description == null;
+    }
+}
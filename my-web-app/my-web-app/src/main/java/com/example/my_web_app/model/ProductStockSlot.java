@@ -0,0 +1,43 @@
+package com.example.my_web_app.model;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 商品の在庫を分割したスロット（セール中の人気商品用）
+ * 注文はランダムに選んだスロットの行だけを更新するため、同じ商品への注文が1行のロックで直列化されない。
+ * 読み書きは ShardedStockService がJDBCで行う（テーブル定義のためのエンティティ）。
+ */
+@Entity
+@Table(name = "product_stock_slot")
+@IdClass(ProductStockSlot.Key.class)
+@Getter
+@Setter
+public class ProductStockSlot {
+
+    @Id
+    private Long productId;
+
+    @Id
+    private int slot;
+
+    private int stock;
+
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long productId;
+        private int slot;
+    }
+}
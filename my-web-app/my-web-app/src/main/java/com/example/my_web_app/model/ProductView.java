@@ -0,0 +1,29 @@
+package com.example.my_web_app.model;
+
+import java.time.Instant;
+
+/**
+ * 一覧・検索で返す商品（読み取り専用）
+ *
+ * JPQLのコンストラクタ式で必要な列から直接作るため、エンティティと違って永続化コンテキストに登録されず、
+ * 変更検知用のスナップショットも持たない。JSONの形は Product と同じ。
+ */
+public record ProductView(
+    Long id,
+    String name,
+    int price,
+    int stock,
+    String description,
+    String imageUrl,
+    long version,
+    Instant lastModified) {
+
+    // JPQLの select new で使う列の並び（コンストラクタの引数と同じ順）
+    public static final String JPQL_SELECT = "select new com.example.my_web_app.model.ProductView("
+        + "p.id, p.name, p.price, p.stock + p.slotStock, p.description, p.imageUrl, p.version, p.lastModified)";
+
+    public static ProductView of(Product product) {
+        return new ProductView(product.getId(), product.getName(), product.getPrice(), product.getStock(),
+            product.getDescription(), product.getImageUrl(), product.getVersion(), product.getLastModified());
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.my_web_app.repository;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import com.example.my_web_app.model.Order;
@@ -8,4 +10,5 @@ import com.example.my_web_app.model.Order;
 // <扱うエンティティの型, エンティティのIDの型>
 public interface OrderRepository extends JpaRepository<Order, Long> {
     // 独自の検索メソッドを定義したい場合はここに記述する
+    List<Order> findByProductId(Long productId);
 }
\ No newline at end of file
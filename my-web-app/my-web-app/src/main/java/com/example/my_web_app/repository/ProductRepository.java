@@ -1,14 +1,41 @@
 package com.example.my_web_app.repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductView;
 
 // JpaRepositoryを継承するだけで、基本的なDB操作メソッドが自動で使えるようになる
 // <扱うエンティティの型, エンティティのIDの型>
-public interface ProductRepository extends JpaRepository<Product, Long> {
+// ProductRepositoryCustom: キーセットページングやカーソル読み出しなどの独自実装
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
     // 独自の検索メソッドを定義したい場合はここに記述する
     List<Product> findByName(String name);
     List<Product> findByNameContaining(String name);
+
+    // 一覧・検索用（エンティティを作らず、必要な列だけを読み取り専用の ProductView にする）
+    @Query(ProductView.JPQL_SELECT + " from Product p order by p.id")
+    List<ProductView> findAllViews();
+
+    @Query(ProductView.JPQL_SELECT + " from Product p where p.name = :name")
+    List<ProductView> findViewsByName(@Param("name") String name);
+
+    @Query(ProductView.JPQL_SELECT + " from Product p where p.id in :ids")
+    List<ProductView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 在庫が足りる場合だけ在庫を減らす（読み取り→チェック→書き込みを1つのUPDATEで行う）
+     * @return 更新された行数（0 の場合は商品が存在しないか在庫不足）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Product p set p.stock = p.stock - :quantity, p.version = p.version + 1, p.lastModified = :now"
+         + " where p.id = :id and p.stock >= :quantity and p.deletedAt is null")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity, @Param("now") Instant now);
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.example.my_web_app.repository;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductView;
+
+// Spring Data の自動実装では書けない検索（キーセットページング・カーソル読み出し）を定義する
+public interface ProductRepositoryCustom {
+
+    /**
+     * キーセットページング
+     * afterId の商品より後ろ（並び順で）の商品を最大 limit 件返す。afterId が null の場合は先頭から。
+     */
+    List<ProductView> findPage(Long afterId, int limit, ProductSortKey sortKey, boolean descending);
+
+    /**
+     * 全商品をID順にJDBCカーソルで読み出し、1行ずつ consumer に渡す（全件をメモリに載せない）
+     */
+    void streamAll(Consumer<Product> consumer);
+}
@@ -0,0 +1,98 @@
+package com.example.my_web_app.repository;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductView;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+// ProductRepositoryCustom の実装（クラス名は「リポジトリ名 + Impl」にするとSpring Dataが自動で組み込む）
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    // JDBCカーソルで一度に取得する行数
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<ProductView> findPage(Long afterId, int limit, ProductSortKey sortKey, boolean descending) {
+        String key = sortKey.getExpression();
+        String direction = descending ? "desc" : "asc";
+        String comparison = descending ? "<" : ">";
+
+        StringBuilder jpql = new StringBuilder(ProductView.JPQL_SELECT).append(" from Product p");
+        Object anchorValue = null;
+        if (afterId != null) {
+            if (sortKey == ProductSortKey.ID) {
+                jpql.append(" where p.id ").append(comparison).append(" :afterId");
+            } else {
+                // 前ページ最後の商品の並び替えキーを取得し、(キー, id) の組で続きから検索する
+                // null（name のみ）は最小の値として並ぶため、昇順では先頭、降順では末尾になる
+                anchorValue = findSortValue(afterId, sortKey);
+                if (anchorValue == null) {
+                    jpql.append(descending
+                        ? " where " + key + " is null and p.id < :afterId"
+                        : " where (" + key + " is not null or p.id > :afterId)");
+                } else {
+                    jpql.append(" where (").append(key).append(" ").append(comparison).append(" :anchor")
+                        .append(" or (").append(key).append(" = :anchor and p.id ").append(comparison).append(" :afterId)");
+                    jpql.append(descending ? " or " + key + " is null)" : ")");
+                }
+            }
+        }
+        jpql.append(" order by ").append(key).append(" ").append(direction);
+        if (sortKey != ProductSortKey.ID) {
+            // 同じ値の商品が並んでも順序が一意になるよう、idを第2キーにする
+            jpql.append(", p.id ").append(direction);
+        }
+
+        TypedQuery<ProductView> query = entityManager.createQuery(jpql.toString(), ProductView.class);
+        if (afterId != null) {
+            query.setParameter("afterId", afterId);
+        }
+        if (anchorValue != null) {
+            query.setParameter("anchor", anchorValue);
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public void streamAll(Consumer<Product> consumer) {
+        JdbcTemplate cursorTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        cursorTemplate.setFetchSize(STREAM_FETCH_SIZE);
+        cursorTemplate.query(
+            "select p.id, p.name, p.price, p.stock"
+                + " + (select coalesce(sum(s.stock), 0) from product_stock_slot s where s.product_id = p.id) as stock,"
+                + " p.description, p.image_url from product p where p." + Product.NOT_DELETED + " order by p.id",
+            (RowCallbackHandler) rs -> {
+                Product product = new Product(rs.getString("name"), rs.getInt("price"), rs.getInt("stock"), rs.getString("description"));
+                product.setId(rs.getLong("id"));
+                product.setImageUrl(rs.getString("image_url"));
+                consumer.accept(product);
+            });
+    }
+
+    // ページングの起点となる商品の並び替えキーの値を取得する
+    // 前ページを読んだ後に削除された商品も起点にできるよう、削除の印が付いた行からも読む（JDBCのSQLで条件を付けない）
+    private Object findSortValue(Long afterId, ProductSortKey sortKey) {
+        List<Object> values = jdbcTemplate.query(
+            "select " + sortKey.getSqlExpression() + " from product where id = ?", (rs, rowNum) -> rs.getObject(1), afterId);
+        if (values.isEmpty()) {
+            // 後片付け（ProductPurger）で行ごと削除された場合
+            throw new IllegalArgumentException("after に指定された商品が見つかりません: " + afterId);
+        }
+        return values.get(0);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.my_web_app.repository;
+
+import com.example.my_web_app.model.Product;
+
+// 商品一覧の並び替えキー（キーセットページングの比較対象にもなる）
+// id・価格・名前は列そのもので並び替え、(列, id) のインデックス（db/schema.sql）で読めるようにする
+public enum ProductSortKey {
+    ID("p.id", "id"),
+    PRICE("p.price", "price"),
+    // 在庫は画面に表示する値（分割した在庫を含む合計）で並べる。式のためインデックスは使えない
+    STOCK("(p.stock + p.slotStock)", "stock + " + Product.SLOT_STOCK_FORMULA),
+    NAME("p.name", "name"); // nameはnullを許す（H2ではnullが最小の値として並ぶ）
+
+    // JPQL上で比較・並び替えに使う式
+    private final String expression;
+
+    // product テーブルから同じ値を読むSQLの式
+    private final String sqlExpression;
+
+    ProductSortKey(String expression, String sqlExpression) {
+        this.expression = expression;
+        this.sqlExpression = sqlExpression;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public String getSqlExpression() {
+        return sqlExpression;
+    }
+
+    /**
+     * クエリパラメータ（例: "price"）から並び替えキーを取得する
+     */
+    public static ProductSortKey from(String value) {
+        for (ProductSortKey key : values()) {
+            if (key.name().equalsIgnoreCase(value)) {
+                return key;
+            }
+        }
+        throw new IllegalArgumentException("並び替えキーが不正です: " + value);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.my_web_app.service;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.my_web_app.config.CacheConfig;
+import com.example.my_web_app.model.Order;
+
+/**
+ * 商品一覧の変更カウンター（条件付きGETの ETag / Last-Modified に使う）
+ *
+ * 商品の追加・更新・削除、注文による在庫変更のたびに1つ進める。
+ * 一覧・検索の ETag はこのカウンターから作るため、If-None-Match の確認にDBもキャッシュも使わない。
+ * カウンターを進める前に該当するキャッシュを破棄し、古い一覧が新しい ETag で返らないようにする
+ * （@CacheEvict はこの通知より後に動くことがあるため、ここでも破棄する）。
+ */
+@Component
+public class CatalogChangeTracker {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    // 起動ごとに変わる値（再起動でカウンターが戻っても以前の ETag と一致しないようにする）
+    private final String nonce = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong changes = new AtomicLong();
+
+    private volatile Instant lastModified = Instant.now();
+
+    /**
+     * 一覧・検索結果の ETag（圧縮などで表現が変わっても使えるよう弱いETagにする）
+     */
+    public String etag() {
+        return "W/\"c" + nonce + "-" + changes.get() + "\"";
+    }
+
+    /**
+     * 一覧が最後に変わった日時
+     */
+    public Instant lastModified() {
+        return lastModified;
+    }
+
+    // 商品の追加・更新・削除（トランザクション中ならコミット後）
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        evict(targetCache(CacheConfig.PRODUCT_CACHE), event.productId());
+        changed();
+    }
+
+    // 注文による在庫の変更（トランザクション中ならコミット後）
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        Cache productCache = targetCache(CacheConfig.PRODUCT_CACHE);
+        for (Order order : event.orders()) {
+            evict(productCache, order.getProductId());
+        }
+        changed();
+    }
+
+    private void changed() {
+        Cache queryCache = targetCache(CacheConfig.PRODUCT_QUERY_CACHE);
+        if (queryCache != null) {
+            queryCache.clear();
+        }
+        changes.incrementAndGet();
+        lastModified = Instant.now();
+    }
+
+    private static void evict(Cache cache, Long productId) {
+        if (cache != null && productId != null) {
+            cache.evict(productId);
+        }
+    }
+
+    // コミット後の処理の中ではトランザクション対応のキャッシュが破棄を先送りするため、元のキャッシュを直接使う
+    private Cache targetCache(String name) {
+        Cache cache = cacheManager.getCache(name);
+        return cache instanceof TransactionAwareCacheDecorator decorator ? decorator.getTargetCache() : cache;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.my_web_app.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSV（RFC 4180）を1レコードずつ読む
+ *
+ * 入力全体を読み込まず、呼び出されるたびに次の1レコード分だけを読む。
+ * ダブルクォートで囲んだ項目の中のカンマ・改行・"" （ダブルクォート自体）に対応する。
+ * 改行は CRLF / LF のどちらでもよい。
+ */
+class CsvRecordReader {
+
+    private final Reader reader;
+    private int peeked = -2; // -2: 未読み込み
+    private int line = 1;
+    private int recordLine;
+
+    CsvRecordReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * 次のレコードを読む
+     * @return 項目の一覧（入力の終わりに達した場合は null）
+     */
+    List<String> next() throws IOException {
+        if (peek() == -1) {
+            return null;
+        }
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            int c = read();
+            if (quoted) {
+                if (c == -1) {
+                    throw new IllegalArgumentException(recordLine + "行目: ダブルクォートが閉じられていません。");
+                }
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+                continue;
+            }
+            if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' && peek() == '\n') {
+                // CRLF は次の LF で区切る
+            } else if (c == '\n' || c == -1) {
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * 直前に読んだレコードの開始行（1始まり）
+     */
+    int recordLine() {
+        return recordLine;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        peeked = -2;
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.my_web_app.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.my_web_app.IdempotencyKeyException;
+import com.example.my_web_app.OrderBusyException;
+import com.example.my_web_app.OrderNotDurableException;
+import com.example.my_web_app.ProductNotFoundException;
+import com.example.my_web_app.metrics.OrderMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Idempotency-Key による注文の重複防止
+ *
+ * 同じキーの再送（タイムアウト後のリトライなど）には、注文の処理をやり直さずに最初の結果をそのまま返す。
+ * キーと結果は件数と有効期限に上限のあるメモリ上のキャッシュに持ち、
+ * app.orders.idempotency.persistent=true の場合は idempotency_record テーブルにも保存する（再起動後・複数台でも有効）。
+ * 最初の注文の処理中に同じキーが届いた場合は 409、同じキーで内容が異なる場合は 422 を返す。
+ * 在庫不足などの業務エラー（400 / 404）も結果として保存する。ジャーナルに追記後、書き出しを確認できなかった注文は
+ * 受け付け済み（202）として保存する。キーを消して再実行できるようにするのは、在庫の引き当て前に混雑で断った場合（503）だけで、
+ * それ以外の想定外のエラーは注文が登録済みの可能性があるため 500 として保存する（再注文には新しいキーが必要）。
+ * 処理中にプロセスが落ちると、テーブルの行は処理中（status 0）のまま残る。作成から app.orders.idempotency.lease を
+ * 過ぎた処理中の行は、同じ内容の再送が引き継いで注文を再実行する（有効期限まで 409 を返し続けないようにする）。
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+
+    // 再送に対するレスポンスであることを示すヘッダー
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    // 有効期限切れの行を消す間隔
+    private static final long PURGE_INTERVAL_MILLIS = 60_000;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OrderMetrics orderMetrics;
+
+    private final Cache<String, Entry> entries;
+    private final Duration ttl;
+    private final Duration lease;
+    private final boolean persistent;
+    private final AtomicLong lastPurge = new AtomicLong();
+
+    // 保存した結果（ステータスとJSON）
+    private record Outcome(int status, byte[] body) {}
+
+    private static final class Entry {
+        private final String requestHash;
+        private volatile Outcome outcome; // null: 処理中
+
+        private Entry(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+
+    public IdempotencyService(
+            @Value("${app.orders.idempotency.maximum-size:100000}") long maximumSize,
+            @Value("${app.orders.idempotency.ttl:24h}") Duration ttl,
+            @Value("${app.orders.idempotency.lease:30s}") Duration lease,
+            @Value("${app.orders.idempotency.persistent:false}") boolean persistent) {
+        this.entries = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).build();
+        this.ttl = ttl;
+        this.lease = lease;
+        this.persistent = persistent;
+    }
+
+    /**
+     * キーが初めての場合は action を実行して結果を保存し、再送の場合は保存した結果を返す
+     * @param key     Idempotency-Key ヘッダーの値（null の場合は重複防止をせずに実行する）
+     * @param request リクエストの内容（同じキーで内容が変わっていないかの確認に使う）
+     */
+    public ResponseEntity<?> execute(String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " は1〜" + MAX_KEY_LENGTH + "文字で指定してください。");
+        }
+        String requestHash = hash(request);
+        Entry entry = new Entry(requestHash);
+        Entry existing = entries.asMap().putIfAbsent(key, entry);
+        if (existing != null) {
+            return replay(existing, requestHash);
+        }
+
+        if (persistent) {
+            Outcome stored;
+            try {
+                stored = claim(key, requestHash);
+            } catch (RuntimeException e) {
+                entries.invalidate(key);
+                throw e;
+            }
+            if (stored != null) {
+                entry.outcome = stored;
+                return replay(entry, requestHash);
+            }
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (IllegalArgumentException e) {
+            complete(key, entry, error(HttpStatus.BAD_REQUEST, e));
+            throw e;
+        } catch (ProductNotFoundException e) {
+            complete(key, entry, error(HttpStatus.NOT_FOUND, e));
+            throw e;
+        } catch (OrderNotDurableException e) {
+            // 注文は受け付け済み。再送で注文が重複しないように 202 として保存する
+            complete(key, entry, error(HttpStatus.ACCEPTED, e));
+            throw e;
+        } catch (OrderBusyException e) {
+            // 在庫の引き当て前に断った注文だけは、同じキーで再実行できるようにする
+            entries.invalidate(key);
+            if (persistent) {
+                jdbcTemplate.update("delete from idempotency_record where idempotency_key = ?", key);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            // 想定外のエラーは注文が登録済みの可能性があるため、再実行させずに 500 として保存する
+            complete(key, entry, new Outcome(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                toJson(Map.of("message", "注文の処理中にエラーが発生しました。注文の状況を確認してください。"))));
+            throw e;
+        }
+
+        complete(key, entry, new Outcome(response.getStatusCode().value(), toJson(response.getBody())));
+        return response;
+    }
+
+    private ResponseEntity<?> replay(Entry entry, String requestHash) {
+        if (!entry.requestHash.equals(requestHash)) {
+            throw new IdempotencyKeyException(HttpStatus.UNPROCESSABLE_ENTITY,
+                "同じ " + HEADER + " で異なる内容の注文が送られました。");
+        }
+        Outcome outcome = entry.outcome;
+        if (outcome == null) {
+            throw new IdempotencyKeyException(HttpStatus.CONFLICT,
+                "同じ " + HEADER + " の注文を処理中です。しばらくしてから再度お試しください。");
+        }
+        orderMetrics.replayed();
+        return ResponseEntity.status(outcome.status())
+            .contentType(MediaType.APPLICATION_JSON)
+            .header(REPLAYED_HEADER, "true")
+            .body(outcome.body());
+    }
+
+    // 結果を保存する。注文は処理済みのため、テーブルに保存できなくても例外にはしない
+    // （このプロセス内の再送にはメモリ上の結果を返す）
+    private void complete(String key, Entry entry, Outcome outcome) {
+        entry.outcome = outcome;
+        if (persistent) {
+            try {
+                jdbcTemplate.update("update idempotency_record set status = ?, response_body = ? where idempotency_key = ?",
+                    outcome.status(), outcome.body(), key);
+            } catch (DataAccessException e) {
+                log.warn("{} の結果を保存できませんでした: {}", HEADER, key, e);
+            }
+        }
+    }
+
+    // テーブルにキーを登録する（既に登録済みの場合はその結果を返す。処理中・内容違いの場合は例外）
+    private Outcome claim(String key, String requestHash) {
+        purgeExpired();
+        Instant now = Instant.now();
+        try {
+            jdbcTemplate.update(
+                "insert into idempotency_record (idempotency_key, request_hash, status, created_at) values (?, ?, 0, ?)",
+                key, requestHash, Timestamp.from(now));
+            return null;
+        } catch (DuplicateKeyException e) {
+            List<Outcome> stored = jdbcTemplate.query(
+                "select request_hash, status, response_body from idempotency_record where idempotency_key = ?",
+                (rs, rowNum) -> {
+                    if (!rs.getString(1).equals(requestHash)) {
+                        throw new IdempotencyKeyException(HttpStatus.UNPROCESSABLE_ENTITY,
+                            "同じ " + HEADER + " で異なる内容の注文が送られました。");
+                    }
+                    return new Outcome(rs.getInt(2), rs.getBytes(3));
+                },
+                key);
+            // 処理中のまま lease を過ぎた行は引き継ぐ（作成日時を更新できた1件の再送だけが再実行する）
+            if (!stored.isEmpty() && stored.get(0).status() == 0 && jdbcTemplate.update(
+                    "update idempotency_record set created_at = ? where idempotency_key = ? and status = 0 and created_at < ?",
+                    Timestamp.from(now), key, Timestamp.from(now.minus(lease))) == 1) {
+                return null;
+            }
+            if (stored.isEmpty() || stored.get(0).status() == 0) {
+                throw new IdempotencyKeyException(HttpStatus.CONFLICT,
+                    "同じ " + HEADER + " の注文を処理中です。しばらくしてから再度お試しください。");
+            }
+            return stored.get(0);
+        }
+    }
+
+    // 有効期限切れの行を消す（1分に1回まで）
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        long last = lastPurge.get();
+        if (now - last >= PURGE_INTERVAL_MILLIS && lastPurge.compareAndSet(last, now)) {
+            jdbcTemplate.update("delete from idempotency_record where created_at < ?",
+                Timestamp.from(Instant.ofEpochMilli(now).minus(ttl)));
+        }
+    }
+
+    private Outcome error(HttpStatus status, RuntimeException e) {
+        // 例外ハンドラーと同じ形（{"message": ...}）で保存する
+        return new Outcome(status.value(), toJson(Map.of("message", e.getMessage())));
+    }
+
+    private byte[] toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("レスポンスをJSONに変換できません。", e);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(toJson(request)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
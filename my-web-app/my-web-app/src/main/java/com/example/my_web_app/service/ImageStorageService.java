@@ -0,0 +1,413 @@
+package com.example.my_web_app.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 商品画像の保存と縮小版（サムネイル・中サイズ）の生成
+ *
+ * アップロードされた画像は {images.dir}/{key}/original.{拡張子} にNIOチャネルで少しずつ書き込み、
+ * ファイル全体をメモリに載せない。key は画像の内容のSHA-256で、同じ画像が何度アップロードされても
+ * 1つだけ保存する（内容が変わればURLも変わるため、ブラウザは画像を無期限にキャッシュできる）。
+ * 縮小版はリクエストのスレッドではなく、件数を制限したバックグラウンドのスレッドで生成する。
+ * 縮小版ができるまで（またはJavaで読めない形式の場合）は元画像を返す。
+ * 画素数はヘッダーだけを読んで確認し、上限を超える画像は受け付けない（展開するとメモリを使い切るため）。
+ * 縮小版を作るときも、縮小後の大きさに足りる程度に間引いて読み込む。
+ */
+@Service
+public class ImageStorageService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageStorageService.class);
+
+    // 画像のURL（{key} に画像セットのキーが入る）
+    public static final String IMAGE_URL_PREFIX = "/api/images/";
+
+    // 1回の transferFrom で書き込む最大バイト数
+    private static final long TRANSFER_CHUNK = 1024 * 1024;
+
+    // キーに使える文字（パスの書き換えを防ぐ）
+    private static final Pattern KEY_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final Pattern EXTENSION_PATTERN = Pattern.compile("[a-z0-9]{1,5}");
+
+    // 受け付ける画像の画素数の上限（展開すると1画素あたり4バイト程度を使う）
+    private static final long MAX_PIXELS = 40_000_000L;
+
+    // 画像のサイズ違い
+    public enum Variant {
+        THUMB("thumb.jpg", 200),
+        MEDIUM("medium.jpg", 800),
+        ORIGINAL(null, 0);
+
+        private final String filename;
+        private final int width;
+
+        Variant(String filename, int width) {
+            this.filename = filename;
+            this.width = width;
+        }
+
+        public static Variant from(String value) {
+            for (Variant variant : values()) {
+                if (variant.name().equalsIgnoreCase(value)) {
+                    return variant;
+                }
+            }
+            throw new IllegalArgumentException("画像のサイズ指定が不正です: " + value);
+        }
+    }
+
+    /**
+     * 配信する画像ファイル
+     * @param file      画像ファイル
+     * @param requested 要求されたサイズそのものか（false の場合は縮小版の代わりに元画像を返している）
+     */
+    public record StoredImage(Path file, boolean requested) {}
+
+    private final Path imageDir;
+
+    // 画像の再利用と削除を直列化するロック（本数は2のべき乗にする）
+    private static final int KEY_LOCK_STRIPES = 64;
+    private final ReentrantLock[] keyLocks = new ReentrantLock[KEY_LOCK_STRIPES];
+
+    // アップロードのサイズと保存にかかった時間、縮小版の生成にかかった時間
+    private final DistributionSummary uploadBytes;
+    private final Timer uploadTimer;
+    private final Timer resizeTimer;
+
+    // 縮小版の生成用（スレッド数・待ち行列を制限し、溢れた場合は縮小版を作らず元画像で代用する）
+    private final ThreadPoolExecutor resizeExecutor = new ThreadPoolExecutor(
+        2, 2, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(100),
+        Thread.ofPlatform().name("image-resize-", 0).daemon(true).factory());
+
+    public ImageStorageService(@Value("${app.images.dir:src/main/resources/static/images/}") String imageDir,
+                               MeterRegistry meterRegistry) {
+        this.imageDir = Paths.get(imageDir);
+        for (int i = 0; i < KEY_LOCK_STRIPES; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+        this.uploadBytes = DistributionSummary.builder("images.upload.bytes")
+            .description("アップロードされた画像のサイズ")
+            .baseUnit("bytes")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.uploadTimer = Timer.builder("images.upload.duration")
+            .description("画像の保存にかかった時間（ハッシュ計算を含む）")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.resizeTimer = Timer.builder("images.resize.duration")
+            .description("縮小版の生成にかかった時間")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        meterRegistry.gauge("images.resize.queue", resizeExecutor, executor -> executor.getQueue().size());
+    }
+
+    // 生成中の縮小版は書き終えてから止める（書きかけの一時ファイルを残さない）
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        resizeExecutor.shutdown();
+        resizeExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 画像を保存し、縮小版の生成を予約する
+     * @return ブラウザからアクセスできる画像のURL
+     * @throws IllegalArgumentException 画素数が上限を超えている場合
+     */
+    public String store(MultipartFile imageFile) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return storeFile(imageFile);
+        } finally {
+            uploadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private String storeFile(MultipartFile imageFile) throws IOException {
+        Files.createDirectories(imageDir);
+
+        // 書き込みながらハッシュを計算する（ファイルを2回読まない）
+        MessageDigest digest = sha256();
+        Path tmp = Files.createTempFile(imageDir, ".upload-", ".tmp");
+        try (InputStream in = new DigestInputStream(imageFile.getInputStream(), digest)) {
+            uploadBytes.record(write(in, tmp));
+            checkPixels(tmp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        String key = HexFormat.of().formatHex(digest.digest());
+        Path dir = imageDir.resolve(key);
+        // 保存済みの画像の再利用と delete() の確認・削除が入れ違わないよう、同じキーのロックの中で行う
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            Optional<Path> existing = findOriginal(dir);
+            if (existing.isPresent()) {
+                // 同じ内容の画像は保存済み。使われた日時を更新し、商品に設定されるまで削除されないようにする
+                Files.delete(tmp);
+                Files.setLastModifiedTime(dir, FileTime.from(Instant.now()));
+                // 前回縮小版を作れなかった場合（待ち行列が溢れた等）は作り直す
+                if (!Files.exists(dir.resolve(Variant.THUMB.filename))) {
+                    scheduleVariants(dir, existing.get());
+                }
+                return IMAGE_URL_PREFIX + key;
+            }
+
+            Files.createDirectories(dir);
+            Path original = dir.resolve("original." + extensionOf(imageFile.getOriginalFilename()));
+            // 一時ファイルから置き換えるため、書き込み途中のファイルが配信されることはない
+            Files.move(tmp, original, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            scheduleVariants(dir, original);
+            return IMAGE_URL_PREFIX + key;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 画像（元画像と縮小版）を削除する（商品の削除後、どの商品からも使われなくなった画像に使う）
+     * 同じ内容の画像は store() で再利用されるため、store() と同じロックの中で確認してから削除する。
+     * store() が返したURLが商品に設定されるまでには間があるため、minIdle 以内に保存・再利用された画像は削除しない。
+     * @param imageUrl store() が返したURL（それ以外の形式の場合は何もしない）
+     * @param minIdle  最後に保存・再利用されてから経過している必要がある時間
+     * @param unused   どの商品からも使われていないか（ロックの中で確認する）
+     * @return 削除した場合は true
+     */
+    public boolean delete(String imageUrl, Duration minIdle, BooleanSupplier unused) throws IOException {
+        if (imageUrl == null || !imageUrl.startsWith(IMAGE_URL_PREFIX)) {
+            return false;
+        }
+        String key = imageUrl.substring(IMAGE_URL_PREFIX.length());
+        if (!KEY_PATTERN.matcher(key).matches()) {
+            return false;
+        }
+        Path dir = imageDir.resolve(key);
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            if (!Files.isDirectory(dir)
+                    || Files.getLastModifiedTime(dir).toInstant().isAfter(Instant.now().minus(minIdle))
+                    || !unused.getAsBoolean()) {
+                return false;
+            }
+            return FileSystemUtils.deleteRecursively(dir);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 画像のキーごとのロック（キーのハッシュで振り分ける）
+    private ReentrantLock lockFor(String key) {
+        return keyLocks[key.hashCode() & (KEY_LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * 画像ファイルを探す（指定したサイズがまだ無い場合は元画像）
+     */
+    public Optional<StoredImage> resolve(String key, Variant variant) throws IOException {
+        if (!KEY_PATTERN.matcher(key).matches()) {
+            return Optional.empty();
+        }
+        Path dir = imageDir.resolve(key);
+        if (variant.filename != null) {
+            Path file = dir.resolve(variant.filename);
+            if (Files.exists(file)) {
+                return Optional.of(new StoredImage(file, true));
+            }
+        }
+        return findOriginal(dir).map(file -> new StoredImage(file, variant == Variant.ORIGINAL));
+    }
+
+    private static Optional<Path> findOriginal(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return Optional.empty();
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "original.*")) {
+            for (Path file : files) {
+                return Optional.of(file);
+            }
+        }
+        return Optional.empty();
+    }
+
+    // 書き込んだバイト数を返す
+    private static long write(InputStream in, Path target) throws IOException {
+        try (ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            long position = 0;
+            long written;
+            while ((written = out.transferFrom(source, position, TRANSFER_CHUNK)) > 0) {
+                position += written;
+            }
+            out.force(false);
+            return position;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 はすべてのJavaで使える
+        }
+    }
+
+    private void scheduleVariants(Path dir, Path original) {
+        try {
+            resizeExecutor.execute(() -> resizeTimer.record(() -> createVariants(dir, original)));
+        } catch (RejectedExecutionException e) {
+            log.warn("縮小版の生成待ちが上限に達したため、元画像のみを保存しました: {}", original);
+        }
+    }
+
+    // ヘッダーの幅と高さで画素数を確認する（Javaで読めない形式の場合は確認しない。縮小版も作られない）
+    private static void checkPixels(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = readerFor(in);
+            if (reader == null) {
+                return;
+            }
+            try {
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS) {
+                    throw new IllegalArgumentException("画像の画素数が大きすぎます（上限: " + MAX_PIXELS + "画素）。");
+                }
+            } catch (IOException e) {
+                // ヘッダーが壊れている画像は縮小版を作らずに元画像のまま配信する
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageReader readerFor(ImageInputStream in) {
+        if (in == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(in, true, true);
+        return reader;
+    }
+
+    // 縮小版の作成に使う大きさまで間引いて読み込む（一番大きい縮小版の2倍の幅は残す）
+    private static BufferedImage readForResize(Path original) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            ImageReader reader = readerFor(in);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                int width = reader.getWidth(0);
+                if ((long) width * reader.getHeight(0) > MAX_PIXELS) {
+                    throw new IOException("画像の画素数が上限を超えています: " + width + "x" + reader.getHeight(0));
+                }
+                int period = Math.max(1, width / (Variant.MEDIUM.width * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(period, period, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void createVariants(Path dir, Path original) {
+        try {
+            BufferedImage source = readForResize(original);
+            if (source == null) {
+                log.info("縮小版を生成できない画像形式のため、元画像のみを配信します: {}", original);
+                return;
+            }
+            for (Variant variant : Variant.values()) {
+                if (variant.filename == null) {
+                    continue;
+                }
+                Path tmp = Files.createTempFile(dir, ".variant-", ".tmp");
+                ImageIO.write(resize(source, variant.width), "jpg", tmp.toFile());
+                Files.move(tmp, dir.resolve(variant.filename), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("縮小版の生成に失敗しました: {}", original, e);
+        }
+    }
+
+    // 横幅 width 以下に縮小する（拡大はしない）。JPEGで保存するため透過はなくしてRGBにする
+    private static BufferedImage resize(BufferedImage source, int width) {
+        int targetWidth = Math.min(width, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        BufferedImage resized = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resized.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, targetWidth, targetHeight, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return resized;
+    }
+
+    private static String extensionOf(String filename) {
+        if (filename != null) {
+            int dot = filename.lastIndexOf('.');
+            if (dot >= 0) {
+                String extension = filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+                if (EXTENSION_PATTERN.matcher(extension).matches()) {
+                    return extension;
+                }
+            }
+        }
+        return "bin";
+    }
+}
@@ -0,0 +1,484 @@
+package com.example.my_web_app.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import com.example.my_web_app.OrderBusyException;
+import com.example.my_web_app.OrderNotDurableException;
+import com.example.my_web_app.ProductNotFoundException;
+import com.example.my_web_app.config.CacheConfig;
+import com.example.my_web_app.metrics.OrderMetrics;
+import com.example.my_web_app.model.Order;
+import com.example.my_web_app.model.Product;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 注文ジャーナルを使った注文の受け付け（app.orders.journal.enabled=true のときだけ有効）
+ *
+ * 注文はジャーナルへの追記（グループコミットでディスクに書き出されるまで）で受け付け完了とし、
+ * DBへの登録（在庫の減算と orders への登録）はバックグラウンドでまとめて行う。
+ * そのため受け付け時点では注文IDは採番されていない（202 Accepted で返す）。
+ *
+ * 在庫は「DBの在庫 - 受け付け済みでDB未反映の数量」で確認する。
+ * DB未反映の数量はDBへの登録をコミットした後に減らし、受け付け時はDBの在庫より先に読むため、在庫を多く見積もることはない。
+ * 起動時にはジャーナルのうちDBに未登録の注文（journal_seq で判定）を登録してから受け付けを始める。
+ */
+@Service
+@ConditionalOnProperty(name = "app.orders.journal.enabled", havingValue = "true")
+public class JournaledOrderService {
+
+    private static final Logger log = LoggerFactory.getLogger(JournaledOrderService.class);
+
+    // ロックの本数（商品IDのハッシュで振り分ける。2のべき乗にする）
+    private static final int STRIPES = 256;
+
+    // ロック待ちの上限（これを超えたら混雑として注文を断る）
+    private static final long LOCK_TIMEOUT_MILLIS = 5_000;
+
+    // 1回の受け付けの明細数・1回のDB登録の件数の上限
+    private static final int MAX_LINES = 1000;
+    private static final int FLUSH_BATCH = 1000;
+
+    // 商品名の上限（orders.product_name の長さ。超えるとDBに登録できない）
+    private static final int MAX_PRODUCT_NAME = 255;
+
+    // DBに登録できなかった注文の記録先（ジャーナルのディレクトリ内）
+    private static final String DEAD_LETTER_FILE = "dead-letter.log";
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private OrderMetrics orderMetrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.orders.journal.dir:data/order-journal}")
+    private String journalDir;
+
+    @Value("${app.orders.journal.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    @Value("${app.orders.journal.flush-interval:50ms}")
+    private Duration flushInterval;
+
+    @Value("${app.orders.journal.sync-timeout:2s}")
+    private Duration syncTimeout;
+
+    private OrderJournal journal;
+    private ScheduledExecutorService flusher;
+
+    // 受け付け済みでDBに未登録の注文
+    private final BlockingDeque<OrderJournal.Entry> unflushed = new LinkedBlockingDeque<>();
+    private final ConcurrentSkipListSet<Long> unflushedSeqs = new ConcurrentSkipListSet<>();
+
+    // 単独でもDBに登録できなかった注文（再試行しない）
+    private final List<OrderJournal.Entry> deadLetters = new CopyOnWriteArrayList<>();
+
+    // 商品ID -> 受け付け済みでDBの在庫に未反映の数量
+    private final Map<Long, Integer> pendingQuantities = new ConcurrentHashMap<>();
+
+    // 追記と未登録の一覧への追加の間に、ジャーナルのファイルを削除しないためのロック
+    private final ReadWriteLock appendLock = new ReentrantReadWriteLock();
+
+    public JournaledOrderService() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock(true); // 到着順に処理する
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Long lastSeq = jdbcTemplate.queryForObject("select coalesce(max(journal_seq), 0) from orders", Long.class);
+        journal = new OrderJournal(Paths.get(journalDir), (int) segmentSize.toBytes(), lastSeq);
+
+        // 前回の終了（異常終了を含む）時にDBに登録できていなかった注文を復元する
+        List<OrderJournal.Entry> entries = journal.replay();
+        if (!entries.isEmpty()) {
+            Set<Long> flushed = new HashSet<>(jdbcTemplate.queryForList(
+                "select journal_seq from orders where journal_seq >= ?", Long.class, entries.get(0).seq()));
+            int restored = 0;
+            for (OrderJournal.Entry entry : entries) {
+                if (!flushed.contains(entry.seq())) {
+                    pendingQuantities.merge(entry.order().getProductId(), entry.order().getQuantity(), Integer::sum);
+                    enqueue(entry);
+                    restored++;
+                }
+            }
+            log.info("注文ジャーナルからDBに未登録の注文を {} 件復元しました", restored);
+            while (flush()) {
+                // 復元した注文をすべて登録してから受け付けを始める
+            }
+        }
+
+        meterRegistry.gauge("orders.journal.backlog", unflushed, BlockingDeque::size);
+        meterRegistry.gauge("orders.journal.dead_letters", deadLetters, List::size);
+        flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("order-journal-flush").daemon(true).factory());
+        long interval = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushPending, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        try {
+            while (flush()) {
+                // 残りをDBに登録する（失敗しても次回起動時にジャーナルから復元される）
+            }
+        } catch (RuntimeException e) {
+            log.warn("終了時に注文をDBに登録できませんでした。次回起動時に登録します。", e);
+        }
+        journal.close();
+    }
+
+    /**
+     * 注文を受け付ける（複数明細の場合も、1明細でも在庫が足りなければ全体を断る）
+     * ジャーナルに書き出された時点で戻る。注文IDはDBへの登録時に採番されるため、戻り値の注文には入っていない。
+     * 追記後にディスクへの書き出しを確認できなかった場合は OrderNotDurableException（注文は受け付け済み）。
+     */
+    public List<Order> accept(List<Order> orders) {
+        if (orders == null || orders.isEmpty()) {
+            orderMetrics.rejected(OrderMetrics.INVALID);
+            throw new IllegalArgumentException("注文明細を1件以上指定してください。");
+        }
+        if (orders.size() > MAX_LINES) {
+            orderMetrics.rejected(OrderMetrics.INVALID);
+            throw new IllegalArgumentException("注文明細は" + MAX_LINES + "件以内で指定してください。");
+        }
+
+        // 商品ごとの合計数量
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (Order order : orders) {
+            if (order.getProductId() == null) {
+                orderMetrics.rejected(OrderMetrics.INVALID);
+                throw new IllegalArgumentException("商品IDを指定してください。");
+            }
+            if (order.getQuantity() <= 0) {
+                orderMetrics.rejected(OrderMetrics.INVALID);
+                throw new IllegalArgumentException("数量は1以上で指定してください。");
+            }
+            if (order.getProductName() != null && order.getProductName().length() > MAX_PRODUCT_NAME) {
+                orderMetrics.rejected(OrderMetrics.INVALID);
+                throw new IllegalArgumentException("商品名が長すぎます。");
+            }
+            quantities.merge(order.getProductId(), order.getQuantity(), Integer::sum);
+        }
+
+        Instant orderedAt = Instant.now();
+        orders.forEach(order -> order.setOrderedAt(orderedAt));
+
+        long lastSeq;
+        List<ReentrantLock> held = lockAll(quantities.keySet());
+        try {
+            for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                // DB未反映の数量はDBの在庫より先に読む。flush() はコミットしてから未反映の数量を減らすため、
+                // 逆の順序だと間にコミットされた分を「DBの在庫」と「未反映の数量の減少」の両方で数えてしまう
+                int pending = pendingQuantities.getOrDefault(line.getKey(), 0);
+                // 在庫を分割した商品はスロットの合計を含める（ジャーナルからの登録は分割していない分から減らす）
+                List<Integer> stock = jdbcTemplate.queryForList(
+                    "select p.stock + " + Product.SLOT_STOCK_FORMULA + " from product p where p.id = ? and p." + Product.NOT_DELETED,
+                    Integer.class, line.getKey());
+                if (stock.isEmpty()) {
+                    orderMetrics.rejected(OrderMetrics.NOT_FOUND);
+                    throw new ProductNotFoundException("商品ID: " + line.getKey() + " が見つかりません。");
+                }
+                int available = stock.get(0) - pending;
+                if (available < line.getValue()) {
+                    orderMetrics.rejected(OrderMetrics.INSUFFICIENT_STOCK);
+                    throw new IllegalArgumentException(orders.size() == 1
+                        ? "在庫が不足しています。"
+                        : "在庫が不足しています。（商品ID: " + line.getKey() + "）");
+                }
+            }
+            lastSeq = append(orders);
+        } finally {
+            held.forEach(ReentrantLock::unlock);
+        }
+
+        // ディスクへの書き出しを待つ（同時に受け付けた注文とまとめて1回で書き出される）
+        // 追記した時点でDBへの登録は予約されているため、ここで失敗しても注文は取り消さない
+        orderMetrics.accepted(orders.size());
+        try {
+            journal.awaitDurable(lastSeq, syncTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrderNotDurableException(e);
+        } catch (IllegalStateException e) {
+            throw new OrderNotDurableException(e);
+        }
+        return orders;
+    }
+
+    // ジャーナルに追記し、DBへの登録を予約する。最後の連番を返す
+    private long append(List<Order> orders) {
+        long lastSeq = 0;
+        appendLock.readLock().lock();
+        try {
+            for (Order order : orders) {
+                // DBの在庫に反映されるまでの数量を先に加算する（登録後の減算より先に行うため）
+                pendingQuantities.merge(order.getProductId(), order.getQuantity(), Integer::sum);
+                try {
+                    lastSeq = journal.append(order);
+                } catch (RuntimeException e) {
+                    releasePending(order.getProductId(), order.getQuantity());
+                    throw e;
+                }
+                enqueue(new OrderJournal.Entry(lastSeq, order));
+            }
+        } finally {
+            appendLock.readLock().unlock();
+        }
+        return lastSeq;
+    }
+
+    private void enqueue(OrderJournal.Entry entry) {
+        unflushedSeqs.add(entry.seq());
+        unflushed.add(entry);
+    }
+
+    private void flushPending() {
+        try {
+            while (flush()) {
+                // 溜まっている分がなくなるまで続ける
+            }
+        } catch (RuntimeException e) {
+            log.error("注文のDBへの登録に失敗しました。次の回に再試行します。", e);
+        }
+    }
+
+    /**
+     * 受け付け済みの注文をまとめてDBに登録する（在庫の減算と注文の登録を1トランザクションで行う）
+     * 登録できない注文（制約違反など）が含まれていた場合は1件ずつ登録し直し、単独でも失敗した注文は
+     * 再試行せずに dead-letter として外す（1件のためにジャーナル全体が止まらないようにする）。
+     * それ以外の失敗（DBに接続できないなど）は次の回に同じ順序で再試行する。
+     * @return 上限まで登録した（まだ残っている可能性がある）場合は true
+     */
+    private synchronized boolean flush() {
+        List<OrderJournal.Entry> batch = new ArrayList<>();
+        unflushed.drainTo(batch, FLUSH_BATCH);
+        if (batch.isEmpty()) {
+            return false;
+        }
+
+        try {
+            commit(batch);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("注文 {} 件をまとめてDBに登録できませんでした。1件ずつ登録し直します。", batch.size(), e);
+            for (int i = 0; i < batch.size(); i++) {
+                OrderJournal.Entry entry = batch.get(i);
+                try {
+                    commit(List.of(entry));
+                } catch (DataIntegrityViolationException entryFailure) {
+                    deadLetter(entry, entryFailure);
+                } catch (RuntimeException entryFailure) {
+                    requeue(batch.subList(i, batch.size()));
+                    throw entryFailure;
+                }
+            }
+        } catch (RuntimeException e) {
+            requeue(batch);
+            throw e;
+        }
+        return batch.size() == FLUSH_BATCH;
+    }
+
+    // 1トランザクションで登録し、コミット後の後始末（未反映の数量・キャッシュ・ジャーナル）をする
+    private void commit(List<OrderJournal.Entry> batch) {
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (OrderJournal.Entry entry : batch) {
+            quantities.merge(entry.order().getProductId(), entry.order().getQuantity(), Integer::sum);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            // 受け付け時に在庫を確認済みのため条件なしで減らす（削除済みの商品は更新されないが注文は残す）
+            OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+            List<Object[]> stockArgs = new ArrayList<>(quantities.size());
+            quantities.forEach((productId, quantity) -> stockArgs.add(new Object[] { quantity, now, productId }));
+            jdbcTemplate.batchUpdate(
+                "update product set stock = stock - ?, version = version + 1, last_modified = ? where id = ? and "
+                    + Product.NOT_DELETED, stockArgs);
+            insertOrders(batch);
+        });
+
+        // コミット後にDB未反映の数量を減らし、キャッシュを破棄する
+        quantities.forEach(this::releasePending);
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCT_CACHE);
+        if (cache != null) {
+            quantities.keySet().forEach(cache::evict);
+        }
+        Cache queryCache = cacheManager.getCache(CacheConfig.PRODUCT_QUERY_CACHE);
+        if (queryCache != null) {
+            queryCache.clear();
+        }
+        eventPublisher.publishEvent(new OrderPlacedEvent(batch.stream().map(OrderJournal.Entry::order).toList()));
+        released(batch);
+    }
+
+    // 次の回に同じ順序で再試行する
+    private void requeue(List<OrderJournal.Entry> entries) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            unflushed.addFirst(entries.get(i));
+        }
+    }
+
+    // DBに登録できない注文を外す（在庫の引き当てを戻し、内容をログとファイルに残す）
+    private void deadLetter(OrderJournal.Entry entry, RuntimeException cause) {
+        Order order = entry.order();
+        log.error("注文をDBに登録できないため再試行を止めます（連番: {}, 商品ID: {}, 数量: {}）",
+            entry.seq(), order.getProductId(), order.getQuantity(), cause);
+        try {
+            Files.writeString(Paths.get(journalDir, DEAD_LETTER_FILE),
+                entry.seq() + "\t" + order.getProductId() + "\t" + order.getProductName() + "\t" + order.getUnitPrice()
+                    + "\t" + order.getQuantity() + "\t" + order.getTotal() + "\t" + order.getOrderedAt() + "\n",
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("dead-letter の注文をファイルに記録できませんでした（連番: {}）", entry.seq(), e);
+        }
+        deadLetters.add(entry);
+        releasePending(order.getProductId(), order.getQuantity());
+        released(List.of(entry));
+    }
+
+    // DBに登録済み（または外した）注文だけが入ったジャーナルのファイルを削除する
+    private void released(List<OrderJournal.Entry> entries) {
+        entries.forEach(entry -> unflushedSeqs.remove(entry.seq()));
+        appendLock.writeLock().lock();
+        try {
+            journal.release(unflushedSeqs.isEmpty() ? Long.MAX_VALUE : unflushedSeqs.first());
+        } finally {
+            appendLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * DBに登録できずに外した注文（運用での確認・手動登録用。内容はジャーナルのディレクトリの dead-letter.log にも残る）
+     */
+    public List<Order> deadLetters() {
+        return deadLetters.stream().map(OrderJournal.Entry::order).toList();
+    }
+
+    private void insertOrders(List<OrderJournal.Entry> batch) {
+        jdbcTemplate.batchUpdate(
+            "insert into orders (product_id, product_name, unit_price, quantity, total, ordered_at, journal_seq) values (?, ?, ?, ?, ?, ?, ?)",
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    OrderJournal.Entry entry = batch.get(i);
+                    Order order = entry.order();
+                    ps.setLong(1, order.getProductId());
+                    if (order.getProductName() == null) {
+                        ps.setNull(2, Types.VARCHAR);
+                    } else {
+                        ps.setString(2, order.getProductName());
+                    }
+                    ps.setInt(3, order.getUnitPrice());
+                    ps.setInt(4, order.getQuantity());
+                    ps.setInt(5, order.getTotal());
+                    ps.setObject(6, OffsetDateTime.ofInstant(order.getOrderedAt(), ZoneOffset.UTC));
+                    ps.setLong(7, entry.seq());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            });
+    }
+
+    private void releasePending(Long productId, int quantity) {
+        pendingQuantities.merge(productId, -quantity, (current, delta) -> current + delta == 0 ? null : current + delta);
+    }
+
+    // 商品ごとのロックをストライプの番号順に取る（同時に実行されてもデッドロックしない）
+    private List<ReentrantLock> lockAll(Set<Long> productIds) {
+        SortedSet<Integer> stripes = new TreeSet<>();
+        for (Long productId : productIds) {
+            stripes.add(Long.hashCode(productId) & (STRIPES - 1));
+        }
+        List<ReentrantLock> held = new ArrayList<>(stripes.size());
+        try {
+            for (int stripe : stripes) {
+                ReentrantLock lock = locks[stripe];
+                if (!lock.tryLock(0, TimeUnit.NANOSECONDS)) {
+                    long waitStart = System.nanoTime();
+                    boolean acquired = lock.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    orderMetrics.conflict(System.nanoTime() - waitStart);
+                    if (!acquired) {
+                        orderMetrics.rejected(OrderMetrics.BUSY);
+                        throw new OrderBusyException();
+                    }
+                }
+                held.add(lock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            held.forEach(ReentrantLock::unlock);
+            throw new IllegalStateException("注文の受け付けが中断されました。", e);
+        } catch (RuntimeException e) {
+            held.forEach(ReentrantLock::unlock);
+            throw e;
+        }
+        return held;
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.my_web_app.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.my_web_app.model.Order;
+
+/**
+ * 注文の追記専用ジャーナル（メモリマップドファイル）
+ *
+ * 注文は {dir}/orders-{最初の連番}.journal に先頭から順に追記する。ファイルは固定サイズで作成し、
+ * 一杯になったら次のファイルに切り替える。ディスクへの書き出し（force）は専用のスレッドが行い、
+ * その間に追記された注文はまとめて次の1回で書き出す（グループコミット）。
+ * 追記した注文がディスクに書き出されたかは awaitDurable で待つ。
+ *
+ * レコードの形式: [長さ int][CRC32C int][連番 long][受け付け日時 long(エポックミリ秒)][商品ID long][単価 int][数量 int][合計 int][商品名の長さ short][商品名 UTF-8]
+ * 長さ0はファイルの未使用部分を表す。書き込み途中で落ちたレコード（CRCが合わない）以降は読み捨てる。
+ */
+public class OrderJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderJournal.class);
+
+    // 連番・受け付け日時・商品ID・単価・数量・合計・商品名の長さ
+    private static final int FIXED_PAYLOAD = 8 + 8 + 8 + 4 + 4 + 4 + 2;
+    private static final int HEADER = 4 + 4;
+    private static final int MAX_RECORD = 4096;
+
+    /**
+     * ジャーナルに記録された注文
+     */
+    public record Entry(long seq, Order order) {}
+
+    // 書き出し済みのファイル（削除できるかを最後の連番で判定する）
+    private record Segment(Path file, long lastSeq) {}
+
+    private final Path dir;
+    private final int segmentSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+
+    private final Deque<Segment> closedSegments = new ArrayDeque<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private Path segmentFile;
+    private int position;
+
+    private long lastSeq;
+    private long durableSeq;
+    private IOException failure;
+    private volatile boolean closed;
+
+    private final Thread syncer;
+
+    /**
+     * ジャーナルを開く。既存のファイルは replay で読めるように残し、追記は新しいファイルに行う
+     * （書き込み途中で落ちたファイルの末尾には書き足さない）。
+     *
+     * @param lastUsedSeq 使用済みの連番の最大値（ファイルが削除済みでも連番が重複しないように、DBに登録済みの値を渡す）
+     */
+    public OrderJournal(Path dir, int segmentSize, long lastUsedSeq) throws IOException {
+        if (segmentSize < MAX_RECORD * 2) {
+            throw new IllegalArgumentException("ジャーナルのファイルサイズが小さすぎます: " + segmentSize);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(dir);
+
+        for (Path file : segmentFiles()) {
+            long last = 0;
+            for (Entry entry : read(file)) {
+                last = entry.seq();
+            }
+            if (last == 0) {
+                Files.delete(file); // 注文が1件も入っていないファイル
+                continue;
+            }
+            closedSegments.add(new Segment(file, last));
+            lastSeq = Math.max(lastSeq, last);
+        }
+        lastSeq = Math.max(lastSeq, lastUsedSeq);
+        durableSeq = lastSeq;
+        openSegment(lastSeq + 1);
+
+        syncer = Thread.ofPlatform().name("order-journal-sync").daemon(true).start(this::syncLoop);
+    }
+
+    /**
+     * 既存のファイルに記録されている注文を連番の順にすべて読む
+     */
+    public List<Entry> replay() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (Segment segment : snapshotSegments()) {
+            entries.addAll(read(segment.file()));
+        }
+        return entries;
+    }
+
+    /**
+     * 注文を追記して連番を返す。この時点ではまだディスクに書き出されていない
+     */
+    public long append(Order order) {
+        byte[] name = order.getProductName() == null ? null : order.getProductName().getBytes(StandardCharsets.UTF_8);
+        int length = FIXED_PAYLOAD + (name == null ? 0 : name.length);
+        if (HEADER + length > MAX_RECORD) {
+            throw new IllegalArgumentException("商品名が長すぎます。");
+        }
+
+        lock.lock();
+        try {
+            if (closed || failure != null) {
+                throw new IllegalStateException("注文ジャーナルに書き込めません。", failure);
+            }
+            // 次のレコードの長さ(0)を書く余白も残す
+            if (position + HEADER + length + 4 > segmentSize) {
+                rollSegment();
+            }
+            long seq = lastSeq + 1;
+            ByteBuffer payload = ByteBuffer.allocate(length)
+                .putLong(seq)
+                .putLong(order.getOrderedAt().toEpochMilli())
+                .putLong(order.getProductId())
+                .putInt(order.getUnitPrice())
+                .putInt(order.getQuantity())
+                .putInt(order.getTotal())
+                .putShort((short) (name == null ? -1 : name.length));
+            if (name != null) {
+                payload.put(name);
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(payload.array());
+
+            // 本体とCRCを先に書き、長さを最後に書く（長さが0でなければレコードは書き終わっている）
+            buffer.putInt(position + 4, (int) crc.getValue());
+            buffer.put(position + HEADER, payload.array());
+            buffer.putInt(position, length);
+            position += HEADER + length;
+
+            lastSeq = seq;
+            appended.signal();
+            return seq;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 指定した連番までがディスクに書き出されるまで待つ
+     */
+    public void awaitDurable(long seq, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (failure != null) {
+                    throw new IllegalStateException("注文ジャーナルの書き出しに失敗しました。", failure);
+                }
+                if (remaining <= 0) {
+                    // 追記済みの注文は後で書き出される（呼び出し側は受け付け済みとして扱う）
+                    throw new IllegalStateException("注文ジャーナルの書き出しが時間内に終わりませんでした。");
+                }
+                remaining = durable.awaitNanos(remaining);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 指定した連番より前の注文がすべてDBに登録済みになったことを知らせ、不要になったファイルを削除する
+     */
+    public void release(long firstUnflushedSeq) {
+        List<Path> deletable = new ArrayList<>();
+        lock.lock();
+        try {
+            while (!closedSegments.isEmpty() && closedSegments.peekFirst().lastSeq() < firstUnflushedSeq) {
+                deletable.add(closedSegments.pollFirst().file());
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Path file : deletable) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("注文ジャーナルのファイルを削除できませんでした: {}", file, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            buffer.force();
+            channel.close();
+            durableSeq = lastSeq;
+            durable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 追記があるたびに、それまでに追記された分をまとめて書き出す
+    private void syncLoop() {
+        while (true) {
+            MappedByteBuffer target;
+            long targetSeq;
+            lock.lock();
+            try {
+                while (!closed && durableSeq == lastSeq) {
+                    appended.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+                target = buffer;
+                targetSeq = lastSeq;
+            } finally {
+                lock.unlock();
+            }
+
+            // force の間も追記は続けられる（ここで書き出せなかった分は次の回に書き出す）
+            IOException error = null;
+            try {
+                target.force();
+            } catch (UncheckedIOException e) {
+                error = e.getCause();
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    log.error("注文ジャーナルの書き出しに失敗しました。以降の注文は受け付けません。", error);
+                    failure = error;
+                    durable.signalAll();
+                    return;
+                }
+                durableSeq = Math.max(durableSeq, targetSeq);
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // 現在のファイルを書き出して閉じ、次のファイルを開く（ロックを持った状態で呼ぶ）
+    private void rollSegment() throws IOException {
+        buffer.force();
+        channel.close();
+        durableSeq = lastSeq; // 閉じたファイルの分はすべて書き出し済み
+        durable.signalAll();
+        closedSegments.add(new Segment(segmentFile, lastSeq));
+        openSegment(lastSeq + 1);
+    }
+
+    private void openSegment(long firstSeq) throws IOException {
+        segmentFile = dir.resolve(String.format("orders-%020d.journal", firstSeq));
+        channel = FileChannel.open(segmentFile,
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        position = 0;
+    }
+
+    private List<Segment> snapshotSegments() {
+        lock.lock();
+        try {
+            return new ArrayList<>(closedSegments);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ファイル名（最初の連番）の順に並んだジャーナルファイル
+    private List<Path> segmentFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "orders-*.journal")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private static List<Entry> read(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        // 読み込みにはマップを使わない（マップしたファイルは Windows では削除できないため）
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (buffer.remaining() >= HEADER) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < FIXED_PAYLOAD || length > MAX_RECORD || length > buffer.remaining()) {
+                break; // 未使用部分、または書き込み途中
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                log.warn("注文ジャーナルの末尾に壊れたレコードがあるため読み捨てます: {}", file);
+                break;
+            }
+            entries.add(decode(ByteBuffer.wrap(payload)));
+        }
+        return entries;
+    }
+
+    private static Entry decode(ByteBuffer payload) {
+        long seq = payload.getLong();
+        Order order = new Order();
+        order.setOrderedAt(Instant.ofEpochMilli(payload.getLong()));
+        order.setProductId(payload.getLong());
+        order.setUnitPrice(payload.getInt());
+        order.setQuantity(payload.getInt());
+        order.setTotal(payload.getInt());
+        short nameLength = payload.getShort();
+        if (nameLength >= 0) {
+            byte[] name = new byte[nameLength];
+            payload.get(name);
+            order.setProductName(new String(name, StandardCharsets.UTF_8));
+        }
+        return new Entry(seq, order);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.my_web_app.service;
+
+import java.util.List;
+
+import com.example.my_web_app.model.Order;
+
+/**
+ * 注文がDBに登録されたことを通知するイベント
+ * 売上の集計など、注文に追従する必要がある処理はこのイベントを受け取る（トランザクション中ならコミット後）。
+ *
+ * @param orders 登録された注文（まとめ注文の場合は全明細）
+ */
+public record OrderPlacedEvent(List<Order> orders) {}
@@ -1,45 +1,213 @@
 package com.example.my_web_app.service;
 
 import org.springframework.stereotype.Service;
-
-import jakarta.transaction.Transactional;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.example.my_web_app.ProductNotFoundException;
+import com.example.my_web_app.config.CacheConfig;
+import com.example.my_web_app.metrics.OrderMetrics;
 import com.example.my_web_app.model.Order;
 import com.example.my_web_app.model.Product;
 import com.example.my_web_app.repository.OrderRepository;
 import com.example.my_web_app.repository.ProductRepository;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
 @Service // 💡 Springにサービスコンポーネントとして認識させる
 public class OrderService {
 
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private StockReservationService stockReservationService;
+
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private OrderMetrics orderMetrics;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 1回のまとめ注文で受け付ける明細数の上限
+    private static final int MAX_BATCH_LINES = 1000;
+
+    // DBがデッドロックで注文のトランザクションを取り消した場合に、最初から実行し直す回数の上限
+    private static final int MAX_DEADLOCK_ATTEMPTS = 3;
+
  //購入ロジック
-    @Transactional
+    @Caching(evict = { // 在庫が変わるので、この商品の詳細と一覧のキャッシュを破棄（コミット後）
+        @CacheEvict(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#order.productId"),
+        @CacheEvict(cacheNames = CacheConfig.PRODUCT_QUERY_CACHE, allEntries = true)
+    })
     public Order orderProduct(Order order) {
-        //  IDで商品を取得
-    	Long produtId = order.getProductId();
-    	int quantity = order.getQuantity();
-    	Product product = productRepository.findById(produtId)
-        		.orElseThrow(() -> new ProductNotFoundException("商品ID: " + produtId + " が見つかりません。"));
+        return inTransactionWithRetry(status -> {
+            // 在庫チェックと在庫の減算（条件付きUPDATEで同時注文でも在庫がマイナスにならない）
+            stockReservationService.reserve(order.getProductId(), order.getQuantity());
+
+            order.setOrderedAt(Instant.now());
+            Order savedOrder = orderRepository.save(order);
+            orderMetrics.accepted(1);
+            eventPublisher.publishEvent(new OrderPlacedEvent(List.of(savedOrder)));
+            return savedOrder;
+        });
+    }
 
-    	// 在庫チェック
-        if (product.getStock() < quantity) {
-            throw new IllegalArgumentException("在庫が不足しています。");
+    /**
+     * まとめ注文（カートの一括購入・B2Bの一括取り込み）
+     * 明細数に関係なく、商品の読み込み1回・在庫更新のJDBCバッチ1回・注文登録のJDBCバッチ1回で処理する。
+     * 1明細でもエラーがあれば全体をロールバックする。
+     */
+    public List<Order> orderProducts(List<Order> orders) {
+        return inTransactionWithRetry(status -> placeOrders(orders));
+    }
+
+    private List<Order> placeOrders(List<Order> orders) {
+        if (orders == null || orders.isEmpty()) {
+            orderMetrics.rejected(OrderMetrics.INVALID);
+            throw new IllegalArgumentException("注文明細を1件以上指定してください。");
+        }
+        if (orders.size() > MAX_BATCH_LINES) {
+            orderMetrics.rejected(OrderMetrics.INVALID);
+            throw new IllegalArgumentException("注文明細は" + MAX_BATCH_LINES + "件以内で指定してください。");
+        }
+
+        // 商品ごとの合計数量（同じ商品の明細が複数あってもまとめてチェックする）
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (Order order : orders) {
+            if (order.getProductId() == null) {
+                orderMetrics.rejected(OrderMetrics.INVALID);
+                throw new IllegalArgumentException("商品IDを指定してください。");
+            }
+            if (order.getQuantity() <= 0) {
+                orderMetrics.rejected(OrderMetrics.INVALID);
+                throw new IllegalArgumentException("数量は1以上で指定してください。");
+            }
+            quantities.merge(order.getProductId(), order.getQuantity(), Integer::sum);
+        }
+
+        // 参照している商品を1回のクエリで読み込み、存在と在庫を先にまとめて確認する
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(quantities.keySet())) {
+            products.put(product.getId(), product);
+        }
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Product product = products.get(line.getKey());
+            if (product == null) {
+                orderMetrics.rejected(OrderMetrics.NOT_FOUND);
+                throw new ProductNotFoundException("商品ID: " + line.getKey() + " が見つかりません。");
+            }
+            if (product.getStock() < line.getValue()) {
+                orderMetrics.rejected(OrderMetrics.INSUFFICIENT_STOCK);
+                throw new IllegalArgumentException("在庫が不足しています。（商品ID: " + line.getKey() + "）");
+            }
+        }
+
+        // 在庫の引き当て（確認後に他の注文で在庫が減っていた場合もここで検出してロールバックする）
+        stockReservationService.reserveAll(quantities);
+
+        Instant orderedAt = Instant.now();
+        orders.forEach(order -> order.setOrderedAt(orderedAt));
+        insertOrders(orders);
+        orderMetrics.accepted(orders.size());
+        eventPublisher.publishEvent(new OrderPlacedEvent(orders));
+
+        // 在庫が変わった商品の詳細と一覧のキャッシュを破棄（コミット後）
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCT_CACHE);
+        if (cache != null) {
+            quantities.keySet().forEach(cache::evict);
+        }
+        Cache queryCache = cacheManager.getCache(CacheConfig.PRODUCT_QUERY_CACHE);
+        if (queryCache != null) {
+            queryCache.clear();
         }
+        return orders;
+    }
 
-     // 在庫を減らす
-        product.setStock(product.getStock() - quantity);
-        productRepository.save(product);
+    /**
+     * 注文を1トランザクションで実行する
+     * 分割した在庫の引き当て（ShardedStockService）は、まれにDBのデッドロック検出でトランザクションごと取り消される。
+     * その場合は在庫の減算も取り消されているため、新しいトランザクションで最初からやり直す
+     * （呼び出し元のトランザクションに参加している場合は、やり直せないためそのまま投げる）。
+     */
+    private <T> T inTransactionWithRetry(TransactionCallback<T> action) {
+        boolean joined = TransactionSynchronizationManager.isActualTransactionActive();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(action);
+            } catch (PessimisticLockingFailureException e) {
+                if (joined || attempt >= MAX_DEADLOCK_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // 注文をJDBCバッチでまとめて登録し、採番されたIDを各注文に設定する
+    private void insertOrders(List<Order> orders) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+            con -> con.prepareStatement(
+                "insert into orders (product_id, product_name, unit_price, quantity, total, ordered_at) values (?, ?, ?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    Order order = orders.get(i);
+                    ps.setLong(1, order.getProductId());
+                    ps.setString(2, order.getProductName());
+                    ps.setInt(3, order.getUnitPrice());
+                    ps.setInt(4, order.getQuantity());
+                    ps.setInt(5, order.getTotal());
+                    ps.setObject(6, OffsetDateTime.ofInstant(order.getOrderedAt(), ZoneOffset.UTC));
+                }
 
-        Order savedOrder = orderRepository.save(order);
-        return savedOrder;
+                @Override
+                public int getBatchSize() {
+                    return orders.size();
+                }
+            },
+            keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < orders.size() && i < keys.size(); i++) {
+            Number id = (Number) keys.get(i).values().iterator().next();
+            orders.get(i).setId(id.longValue());
+        }
     }
-}
\ No newline at end of file
+}
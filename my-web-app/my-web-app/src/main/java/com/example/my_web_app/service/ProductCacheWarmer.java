@@ -0,0 +1,101 @@
+package com.example.my_web_app.service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.my_web_app.config.CacheConfig;
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.ProductRepository;
+
+/**
+ * 起動時に売れ筋の商品を商品詳細のキャッシュ（products）に読み込む
+ *
+ * ApplicationRunner は Readiness が ACCEPTING_TRAFFIC になる前に実行されるため、
+ * ロードバランサーから振り分けられる最初のリクエストからキャッシュにヒットする。
+ * 対象は販売数の上位（SalesAggregates）で、足りない分は商品IDの小さい順（一覧の先頭ページ）で埋める。
+ * 読み込みはまとめて行い（chunk ごとに1クエリ）、商品ごとにクエリを発行しない。
+ * AOT（fast-start）ではBeanの有無がビルド時に決まるため、無効にする設定は @ConditionalOnProperty ではなく実行時に見る。
+ */
+@Component
+public class ProductCacheWarmer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCacheWarmer.class);
+
+    // DBから1回に読む商品数
+    private static final int LOAD_CHUNK_SIZE = 1_000;
+
+    @Autowired
+    private SalesAggregates salesAggregates;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Value("${app.cache.warmup.enabled:true}")
+    private boolean enabled;
+
+    // 読み込む商品数の上限（キャッシュの件数上限 app.cache.products.maximum-size 以下にする）
+    @Value("${app.cache.warmup.size:1000}")
+    private int size;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            warmUp();
+        }
+    }
+
+    /**
+     * 売れ筋の商品をキャッシュに読み込む
+     * @return 読み込んだ商品の数
+     */
+    public int warmUp() {
+        long start = System.nanoTime();
+
+        Set<Long> ids = new LinkedHashSet<>();
+        for (SalesAggregates.ProductSales sales : salesAggregates.topSellers(size, SalesAggregates.Ranking.UNITS)) {
+            ids.add(sales.productId());
+        }
+        if (ids.size() < size) {
+            ids.addAll(jdbcTemplate.queryForList(
+                "select id from product where " + Product.NOT_DELETED + " order by id limit ?", Long.class, size));
+        }
+        List<Long> hot = ids.stream().limit(size).toList();
+
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCT_CACHE);
+        int loaded = 0;
+        for (int from = 0; from < hot.size(); from += LOAD_CHUNK_SIZE) {
+            List<Long> chunk = hot.subList(from, Math.min(from + LOAD_CHUNK_SIZE, hot.size()));
+            List<Product> products = transactionTemplate.execute(status -> productRepository.findAllById(chunk));
+            for (Product product : products) {
+                // findProductsById と同じキー・値（Optional の中身）で入れる
+                cache.put(product.getId(), product);
+            }
+            loaded += products.size();
+        }
+
+        log.info("商品 {} 件をキャッシュに読み込みました（{} ms）", loaded, (System.nanoTime() - start) / 1_000_000);
+        return loaded;
+    }
+}
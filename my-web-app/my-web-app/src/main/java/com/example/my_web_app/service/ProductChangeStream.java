@@ -0,0 +1,258 @@
+package com.example.my_web_app.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.my_web_app.model.Order;
+import com.example.my_web_app.model.ProductView;
+import com.example.my_web_app.repository.ProductRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 商品・在庫の変更のプッシュ配信（Server-Sent Events: GET /api/products/stream）
+ *
+ * 商品の追加・更新・削除と注文による在庫の変更を受け取り、一定間隔（既定100ms）ごとにまとめて配信する。
+ * 間隔内に同じ商品が何度変わっても送るのは最新の状態1件だけで、DBから読むのも間隔ごとに1回（購読者の数によらない）。
+ * 送信は購読者ごとに1スレッドずつ行い、前の送信が終わっていない購読者には変更を商品ごとに上書きして溜める。
+ * 溜まった商品数が上限を超えた（受信が追いつかない）購読者は切断する。クライアントは再接続して一覧を取り直す
+ * （一覧は条件付きGETで確認できるため、変更がなければ 304 で済む）。
+ */
+@Service
+public class ProductChangeStream {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeStream.class);
+
+    // DBから1回に読む商品数
+    private static final int LOAD_CHUNK_SIZE = 1_000;
+
+    /**
+     * 1回の配信で送る変更
+     * @param products 追加・更新された商品（変更後の状態）
+     * @param deleted  削除された商品のID
+     */
+    public record Changes(List<ProductView> products, List<Long> deleted) {}
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.products.stream.interval:100ms}")
+    private Duration interval;
+
+    @Value("${app.products.stream.timeout:30m}")
+    private Duration timeout;
+
+    @Value("${app.products.stream.heartbeat:15s}")
+    private Duration heartbeat;
+
+    @Value("${app.products.stream.max-pending:10000}")
+    private int maxPending;
+
+    // 次の配信までに変更された商品のID
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+
+    // 購読者への送信（遅いクライアントへの書き込みで待つため仮想スレッドで行う）
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Counter dropped;
+
+    @PostConstruct
+    public void start() {
+        meterRegistry.gaugeCollectionSize("products.stream.subscribers", Tags.empty(), subscribers);
+        dropped = Counter.builder("products.stream.dropped").description("受信が追いつかず切断した購読者の数")
+            .register(meterRegistry);
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("product-change-stream").daemon(true).factory());
+        scheduler.scheduleWithFixedDelay(this::publish, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        senders.shutdownNow();
+    }
+
+    /**
+     * 購読を始める（タイムアウトや切断で終わる）
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    // 商品の追加・更新・削除（トランザクション中ならコミット後）
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!subscribers.isEmpty()) {
+            changed.add(event.productId());
+        }
+    }
+
+    // 注文による在庫の変更（トランザクション中ならコミット後）
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        if (!subscribers.isEmpty()) {
+            for (Order order : event.orders()) {
+                changed.add(order.getProductId());
+            }
+        }
+    }
+
+    // 間隔内に変更された商品の最新の状態を読み、全購読者に渡す
+    private void publish() {
+        try {
+            if (changed.isEmpty()) {
+                return;
+            }
+            List<Long> ids = new ArrayList<>(changed.size());
+            for (Long id : changed) {
+                changed.remove(id);
+                ids.add(id);
+            }
+            if (subscribers.isEmpty()) {
+                return;
+            }
+            Map<Long, ProductView> latest = new LinkedHashMap<>(ids.size() * 2);
+            for (int from = 0; from < ids.size(); from += LOAD_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(from + LOAD_CHUNK_SIZE, ids.size()));
+                for (ProductView product : productRepository.findViewsByIdIn(chunk)) {
+                    latest.put(product.id(), product);
+                }
+            }
+            for (Long id : ids) {
+                latest.putIfAbsent(id, null); // 見つからない商品は削除された
+            }
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(latest);
+            }
+        } catch (RuntimeException e) {
+            // 次の間隔で続ける（スケジュールを止めない）
+            log.warn("商品の変更を配信できませんでした", e);
+        }
+    }
+
+    // 接続が切れていないかの確認とプロキシのアイドル切断の防止（同時に送る変更があればそれで代える）
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(Map.of());
+        }
+    }
+
+    /**
+     * 購読者ごとの未送信の変更（商品IDごとに最新の状態だけを持つ。null は削除）
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Map<Long, ProductView> pending = new LinkedHashMap<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private boolean heartbeatDue;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Map<Long, ProductView> changes) {
+            synchronized (this) {
+                if (changes.isEmpty()) {
+                    heartbeatDue = true;
+                } else {
+                    pending.putAll(changes);
+                }
+                if (pending.size() > maxPending) {
+                    // 送信が追いつかない: 溜め続けずに切断する（クライアントは再接続して一覧を取り直す）
+                    pending.clear();
+                    subscribers.remove(this);
+                    dropped.increment();
+                    emitter.complete();
+                    return;
+                }
+            }
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        // 溜まった変更がなくなるまで送る（同時に送るのは1スレッドだけ）
+        private void drain() {
+            try {
+                while (true) {
+                    Changes changes;
+                    boolean ping;
+                    synchronized (this) {
+                        if (pending.isEmpty() && !heartbeatDue) {
+                            sending.set(false);
+                            return;
+                        }
+                        changes = toChanges(pending);
+                        pending.clear();
+                        ping = heartbeatDue;
+                        heartbeatDue = false;
+                    }
+                    if (!changes.products().isEmpty() || !changes.deleted().isEmpty()) {
+                        emitter.send(SseEmitter.event().name("changes").data(changes, MediaType.APPLICATION_JSON));
+                    } else if (ping) {
+                        emitter.send(SseEmitter.event().comment("ping"));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // クライアントが切断した（または完了済み）
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private static Changes toChanges(Map<Long, ProductView> pending) {
+        List<ProductView> products = new ArrayList<>(pending.size());
+        List<Long> deleted = new ArrayList<>();
+        pending.forEach((id, product) -> {
+            if (product != null) {
+                products.add(product);
+            } else {
+                deleted.add(id);
+            }
+        });
+        return new Changes(products, deleted);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.my_web_app.service;
+
+import com.example.my_web_app.model.Product;
+
+/**
+ * 商品が追加・更新・削除されたことを通知するイベント
+ * 検索インデックスなど、商品の変更に追従する必要がある処理はこのイベントを受け取る。
+ *
+ * @param productId 変更された商品のID
+ * @param product   変更後の商品（削除の場合は null）
+ * @param type      変更の種類
+ */
+public record ProductChangedEvent(Long productId, Product product, Type type) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static ProductChangedEvent created(Product product) {
+        return new ProductChangedEvent(product.getId(), product, Type.CREATED);
+    }
+
+    public static ProductChangedEvent updated(Product product) {
+        return new ProductChangedEvent(product.getId(), product, Type.UPDATED);
+    }
+
+    public static ProductChangedEvent deleted(Long productId) {
+        return new ProductChangedEvent(productId, null, Type.DELETED);
+    }
+}
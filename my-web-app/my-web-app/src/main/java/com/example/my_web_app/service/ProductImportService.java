@@ -0,0 +1,233 @@
+package com.example.my_web_app.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.my_web_app.config.CacheConfig;
+import com.example.my_web_app.model.Product;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * 商品の一括登録（CSV / NDJSON）
+ *
+ * アップロードされたデータを1行ずつ読みながら登録し、全体をメモリに載せない。
+ * CHUNK_SIZE 件ごとに1トランザクションでまとめて登録する（IDはシーケンスから取得済みのため、
+ * HibernateがINSERTをJDBCバッチで送る）。価格のチェックは addProduct と同じで、
+ * 不正な行（商品名・説明文が列の長さを超える行を含む）は登録せずに行番号とエラーを返す（他の行は登録する）。
+ */
+@Service
+public class ProductImportService {
+
+    // 1トランザクションで登録する件数
+    private static final int CHUNK_SIZE = 1_000;
+
+    // レスポンスに含めるエラーの上限（件数は rejected で全件分を返す）
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    /**
+     * 1行分の商品データ（NDJSONの1行 / CSVの1レコード）
+     * エクスポート (GET /api/products/export) の id・imageUrl などの項目は無視する。
+     */
+    public record ProductRow(String name, Integer price, Integer stock, String description) {}
+
+    /**
+     * 登録できなかった行
+     * @param line 行番号（CSVはヘッダーを1行目とする）
+     */
+    public record RowError(long line, String message) {}
+
+    /**
+     * 一括登録の結果
+     */
+    public record ImportResult(long imported, long rejected, List<RowError> errors) {}
+
+    /**
+     * 商品を一括登録する
+     * 形式が壊れていて続きを読めない場合は IllegalArgumentException を投げる（それまでのまとまりは登録済み）。
+     */
+    public ImportResult importProducts(InputStream input, Charset charset, Format format) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, charset), 64 * 1024);
+        Importer importer = new Importer();
+        if (format == Format.CSV) {
+            readCsv(reader, importer);
+        } else {
+            readNdjson(reader, importer);
+        }
+        importer.flush();
+        return new ImportResult(importer.imported, importer.rejected, importer.errors);
+    }
+
+    private void readCsv(BufferedReader reader, Importer importer) throws IOException {
+        CsvRecordReader csv = new CsvRecordReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            throw new IllegalArgumentException("CSVのヘッダー行がありません。");
+        }
+        // 列名 -> 列の位置（大文字小文字・前後の空白は区別しない。先頭のBOMは除く）
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("name") || !columns.containsKey("price")) {
+            throw new IllegalArgumentException("CSVのヘッダー行に name と price の列が必要です。");
+        }
+
+        List<String> record;
+        while ((record = csv.next()) != null) {
+            long line = csv.recordLine();
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue; // 空行
+            }
+            try {
+                importer.add(line, new ProductRow(
+                    column(record, columns, "name"),
+                    integer(column(record, columns, "price"), "価格"),
+                    integer(column(record, columns, "stock"), "在庫"),
+                    column(record, columns, "description")));
+            } catch (IllegalArgumentException e) {
+                importer.reject(line, e.getMessage());
+            }
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, Importer importer) throws IOException {
+        String text;
+        long line = 0;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            ProductRow row;
+            try {
+                // null や配列・数値などオブジェクト以外の値の行も、形式の不正として断る
+                JsonNode node = objectMapper.readTree(text);
+                row = node != null && node.isObject() ? objectMapper.treeToValue(node, ProductRow.class) : null;
+            } catch (JsonProcessingException e) {
+                row = null;
+            }
+            if (row == null) {
+                importer.reject(line, "JSONの形式が不正です。");
+                continue;
+            }
+            importer.add(line, row);
+        }
+    }
+
+    private static String column(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Integer integer(String value, String label) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(label + "は整数で指定してください: " + value);
+        }
+    }
+
+    // 検証済みの行を CHUNK_SIZE 件ずつ登録する
+    private class Importer {
+        private final List<Product> chunk = new ArrayList<>(CHUNK_SIZE);
+        private final List<RowError> errors = new ArrayList<>();
+        private long imported;
+        private long rejected;
+
+        void add(long line, ProductRow row) {
+            int price = row.price() == null ? 0 : row.price();
+            if (price < 0) {
+                reject(line, "価格は0以上にする必要があります。");
+                return;
+            }
+            // 1行でもDBに入らない行があるとチャンク全体の登録が失敗するため、ここで弾く
+            if (row.name() != null && row.name().length() > Product.MAX_TEXT_LENGTH) {
+                reject(line, "商品名は" + Product.MAX_TEXT_LENGTH + "文字以内で指定してください。");
+                return;
+            }
+            if (row.description() != null && row.description().length() > Product.MAX_TEXT_LENGTH) {
+                reject(line, "説明文は" + Product.MAX_TEXT_LENGTH + "文字以内で指定してください。");
+                return;
+            }
+            chunk.add(new Product(row.name(), price, row.stock() == null ? 0 : row.stock(), row.description()));
+            if (chunk.size() == CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(line, message));
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Product product : chunk) {
+                    entityManager.persist(product);
+                }
+                entityManager.flush();
+                entityManager.clear(); // 登録済みの商品を永続化コンテキストに溜めない
+                chunk.forEach(product -> eventPublisher.publishEvent(ProductChangedEvent.created(product)));
+                // 一覧・検索結果のキャッシュを破棄（コミット後）
+                Cache queryCache = cacheManager.getCache(CacheConfig.PRODUCT_QUERY_CACHE);
+                if (queryCache != null) {
+                    queryCache.clear();
+                }
+            });
+            imported += chunk.size();
+            chunk.clear();
+        }
+    }
+}
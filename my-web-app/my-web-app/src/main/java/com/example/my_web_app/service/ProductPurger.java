@@ -0,0 +1,160 @@
+package com.example.my_web_app.service;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 削除済みの商品の後片付け（バックグラウンドで一定間隔ごとに実行する）
+ *
+ * DELETE /api/products/{id} は商品に削除の印（deleted_at）を付けるだけで戻る。
+ * ここでは印を付けてから猶予期間（既定10分）が過ぎた商品の行と在庫スロットを1回あたり batch-size 件ずつ削除し、
+ * どの商品からも使われなくなった画像ファイルを消す。画像の削除はディスクのI/Oが多いため、1秒あたりの件数を制限する。
+ * 注文（orders）は商品名・単価を持つ売上の履歴なので削除しない。
+ *
+ * メトリクス:
+ * - products.purged        : 削除した商品の数
+ * - products.images.purged : 削除した画像の数
+ */
+@Service
+public class ProductPurger {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductPurger.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.products.purge.interval:1m}")
+    private Duration interval;
+
+    @Value("${app.products.purge.grace:10m}")
+    private Duration grace;
+
+    @Value("${app.products.purge.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.products.purge.images-per-second:50}")
+    private int imagesPerSecond;
+
+    private ScheduledExecutorService purger;
+    private Counter purgedProducts;
+    private Counter purgedImages;
+
+    /**
+     * 削除対象の商品
+     */
+    private record Purgeable(Long id, String imageUrl) {}
+
+    @PostConstruct
+    public void start() {
+        purgedProducts = Counter.builder("products.purged").description("削除した商品の数").register(meterRegistry);
+        purgedImages = Counter.builder("products.images.purged").description("削除した画像の数").register(meterRegistry);
+        purger = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("product-purge").daemon(true).factory());
+        long millis = interval.toMillis();
+        purger.scheduleWithFixedDelay(this::purgeAll, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // 途中で止めても、残りは次回起動後に削除される
+        purger.shutdownNow();
+        purger.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // 定期実行: 対象が無くなるまで batch-size 件ずつ削除する（例外で定期実行が止まらないようにする）
+    private void purgeAll() {
+        try {
+            while (purge() == batchSize && !Thread.currentThread().isInterrupted()) {
+                // 次のまとまりへ
+            }
+        } catch (RuntimeException e) {
+            log.warn("削除済みの商品の後片付けに失敗しました。次回に再試行します。", e);
+        }
+    }
+
+    /**
+     * 猶予期間を過ぎた削除済みの商品を最大 batch-size 件削除する
+     * @return 削除した商品の数
+     */
+    public int purge() {
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(grace));
+
+        List<Purgeable> purgeables = transactionTemplate.execute(status -> {
+            List<Purgeable> rows = jdbcTemplate.query(
+                "select id, image_url from product where deleted_at < ? order by deleted_at, id limit ?",
+                (rs, rowNum) -> new Purgeable(rs.getLong("id"), rs.getString("image_url")),
+                cutoff, batchSize);
+            if (rows.isEmpty()) {
+                return rows;
+            }
+            String ids = String.join(",", Collections.nCopies(rows.size(), "?"));
+            Object[] args = rows.stream().map(Purgeable::id).toArray();
+            jdbcTemplate.update("delete from product_stock_slot where product_id in (" + ids + ")", args);
+            jdbcTemplate.update("delete from product where id in (" + ids + ")", args);
+            return rows;
+        });
+        if (purgeables.isEmpty()) {
+            return 0;
+        }
+        purgedProducts.increment(purgeables.size());
+
+        // 画像は同じ内容なら複数の商品で共有されるため、まだ使っている商品（削除の印が付いたものを含む）が無いものだけ消す
+        // （猶予期間内に再アップロードされた画像は、まだ商品に設定されていない可能性があるため残す）
+        Set<String> imageUrls = new LinkedHashSet<>();
+        for (Purgeable purgeable : purgeables) {
+            if (purgeable.imageUrl() != null) {
+                imageUrls.add(purgeable.imageUrl());
+            }
+        }
+        long pauseMillis = imagesPerSecond > 0 ? 1000L / imagesPerSecond : 0;
+        for (String imageUrl : imageUrls) {
+            try {
+                // 使っている商品の確認は、同じ画像の再アップロード（再利用）と入れ違わないよう削除のロックの中で行う
+                if (imageStorageService.delete(imageUrl, grace, () -> jdbcTemplate.queryForObject(
+                        "select count(*) from product where image_url = ?", Integer.class, imageUrl) == 0)) {
+                    purgedImages.increment();
+                }
+                Thread.sleep(pauseMillis);
+            } catch (IOException e) {
+                log.warn("画像 {} を削除できませんでした", imageUrl, e);
+            } catch (InterruptedException e) {
+                // 終了中: 残った画像は使われないまま残る（内容が同じ画像が再アップロードされれば再利用される）
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        log.info("削除済みの商品を {} 件削除しました", purgeables.size());
+        return purgeables.size();
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.my_web_app.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.ProductRepository;
+
+/**
+ * 商品名・説明文の転置インデックス（プロセス内）
+ *
+ * 1文字(ユニグラム)と2文字(バイグラム)ごとに商品IDの一覧を持ち、部分一致検索を
+ * LIKE '%x%' の全件走査ではなくポスティングの積集合で行う。日本語は単語の区切りがないため、
+ * 単語単位ではなく文字N-gramで索引を作る。
+ * 起動時の全件読み込みは Web サーバーが受け付けを始める前（全Beanの初期化後）に行う。読み込み中に届いた変更は
+ * 読み込み後にもう一度適用し、読み込み中に読んだ古い行（更新・削除の前の行）で上書きされたままにしない。
+ */
+@Component
+public class ProductSearchIndex implements SmartInitializingSingleton {
+
+    // 名前・説明文の一致ごとの得点（大きいほど上位）
+    private static final int SCORE_NAME_EXACT = 100;
+    private static final int SCORE_NAME_PREFIX = 50;
+    private static final int SCORE_NAME_CONTAINS = 20;
+    private static final int SCORE_DESCRIPTION_CONTAINS = 5;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    // 商品ID -> 正規化済みの名前・説明文
+    private final Map<Long, IndexedText> documents = new ConcurrentHashMap<>();
+
+    // N-gram -> その文字列を含む商品IDの集合
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    private record IndexedText(String name, String description) {}
+
+    private record Hit(Long productId, int score) {}
+
+    // 全件読み込み中に届いた変更（読み込み中でなければ null）
+    private List<ProductChangedEvent> changesDuringRebuild;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * DBから全商品を読み込んでインデックスを作る
+     */
+    public void rebuild() {
+        synchronized (this) {
+            changesDuringRebuild = new ArrayList<>();
+        }
+        try {
+            productRepository.streamAll(this::put);
+        } finally {
+            synchronized (this) {
+                // 読み込んだ行より新しい変更を、届いた順に適用し直す
+                changesDuringRebuild.forEach(this::apply);
+                changesDuringRebuild = null;
+            }
+        }
+    }
+
+    // 商品の追加・更新・削除に合わせてインデックスを更新する（トランザクション中ならコミット後）
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        if (changesDuringRebuild != null) {
+            changesDuringRebuild.add(event);
+        }
+        apply(event);
+    }
+
+    private void apply(ProductChangedEvent event) {
+        if (event.type() == ProductChangedEvent.Type.DELETED) {
+            remove(event.productId());
+        } else {
+            put(event.product());
+        }
+    }
+
+    /**
+     * 商品をインデックスに登録する（登録済みの場合は置き換える）
+     */
+    public synchronized void put(Product product) {
+        IndexedText text = new IndexedText(normalize(product.getName()), normalize(product.getDescription()));
+        IndexedText previous = documents.put(product.getId(), text);
+        if (previous != null) {
+            Set<String> previousGrams = grams(previous);
+            previousGrams.removeAll(grams(text));
+            unlink(product.getId(), previousGrams);
+        }
+        for (String gram : grams(text)) {
+            postings.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(product.getId());
+        }
+    }
+
+    /**
+     * 商品をインデックスから削除する
+     */
+    public synchronized void remove(Long productId) {
+        IndexedText previous = documents.remove(productId);
+        if (previous != null) {
+            unlink(productId, grams(previous));
+        }
+    }
+
+    /**
+     * 名前・説明文の部分一致で検索し、得点の高い順に最大 limit 件の商品IDを返す
+     */
+    public List<Long> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        // クエリのN-gramのうち、最も件数の少ないポスティングを起点に候補を絞る
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : queryGrams(normalized)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return List.of();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        // 得点の低いものから捨てるため、上位 limit 件だけをヒープに残す
+        Comparator<Hit> ranking = Comparator.comparingInt(Hit::score).thenComparing(Hit::productId, Comparator.reverseOrder());
+        PriorityQueue<Hit> top = new PriorityQueue<>(ranking);
+        for (Long id : lists.get(0)) {
+            if (!containsAll(lists, id)) {
+                continue;
+            }
+            IndexedText text = documents.get(id);
+            int score = text == null ? 0 : score(text, normalized);
+            if (score == 0) {
+                continue; // N-gramはすべて含むが、連続した部分文字列としては含まない
+            }
+            top.offer(new Hit(id, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Long> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().productId());
+        }
+        return result.reversed();
+    }
+
+    private static boolean containsAll(List<Set<Long>> lists, Long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int score(IndexedText text, String query) {
+        if (text.name().equals(query)) {
+            return SCORE_NAME_EXACT;
+        }
+        if (text.name().startsWith(query)) {
+            return SCORE_NAME_PREFIX;
+        }
+        if (text.name().contains(query)) {
+            return SCORE_NAME_CONTAINS;
+        }
+        if (text.description().contains(query)) {
+            return SCORE_DESCRIPTION_CONTAINS;
+        }
+        return 0;
+    }
+
+    private void unlink(Long productId, Set<String> grams) {
+        for (String gram : grams) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(productId);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    // 名前・説明文それぞれの1文字・2文字のN-gram
+    private static Set<String> grams(IndexedText text) {
+        Set<String> grams = new HashSet<>();
+        addGrams(text.name(), grams);
+        addGrams(text.description(), grams);
+        return grams;
+    }
+
+    private static void addGrams(String value, Set<String> grams) {
+        for (int i = 0; i < value.length(); i++) {
+            grams.add(value.substring(i, i + 1));
+            if (i + 1 < value.length()) {
+                grams.add(value.substring(i, i + 2));
+            }
+        }
+    }
+
+    // 1文字のクエリはユニグラム、2文字以上はバイグラムで引く
+    private static Set<String> queryGrams(String query) {
+        Set<String> grams = new HashSet<>();
+        if (query.length() == 1) {
+            grams.add(query);
+        } else {
+            for (int i = 0; i + 1 < query.length(); i++) {
+                grams.add(query.substring(i, i + 2));
+            }
+        }
+        return grams;
+    }
+
+    // 全角・半角や大文字・小文字の違いを吸収する
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return Normalizer.normalize(value, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+}
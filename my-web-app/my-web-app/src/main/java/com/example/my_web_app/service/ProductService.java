@@ -3,18 +3,38 @@ package com.example.my_web_app.service;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.my_web_app.ProductNotFoundException;
+import com.example.my_web_app.config.CacheConfig;
 import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductPatch;
+import com.example.my_web_app.model.ProductView;
 import com.example.my_web_app.repository.ProductRepository;
+import com.example.my_web_app.repository.ProductSortKey;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
 @Service // サービス層
 public class ProductService {
@@ -23,109 +43,387 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
-    private static final String UPLOAD_DIR = "src/main/resources/static/images/";
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    // 画像の保存（縮小版の生成を含む）
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    // 商品の変更を検索インデックスなどに通知する
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // 部分更新（変更する列だけのUPDATE）
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // 楽観ロックが競合した場合（注文による在庫更新と重なった場合など）の保存の試行回数
+    private static final int MAX_SAVE_ATTEMPTS = 3;
+
+    // 一括の部分更新で1回に指定できる商品数と、1文のMERGEで更新する商品数
+    public static final int MAX_PATCH_SIZE = 10_000;
+    private static final int PATCH_CHUNK_SIZE = 500;
+
+    /**
+     * 一括の部分更新の結果
+     */
+    public record PatchResult(int updated) {}
 
     // 商品を追加
+    @CacheEvict(cacheNames = CacheConfig.PRODUCT_QUERY_CACHE, allEntries = true)
     public Product addProduct(Product product) {
         if (product.getPrice() < 0) {
             throw new IllegalArgumentException("価格は0以上にする必要があります。");
         }
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.created(savedProduct));
+        return savedProduct;
     }
 
+    // 一覧・検索は読み取り専用のトランザクションで ProductView を返す（エンティティの管理・変更検知をしない）
+
     //全件取得
-    public List<Product> findAll() {
-        return productRepository.findAll();
+    @Cacheable(cacheNames = CacheConfig.PRODUCT_QUERY_CACHE, key = "'all'")
+    @Transactional(readOnly = true)
+    public List<ProductView> findAll() {
+        return productRepository.findAllViews();
+    }
+
+    // キーセットページング（afterId の商品の続きから limit 件）
+    @Cacheable(cacheNames = CacheConfig.PRODUCT_QUERY_CACHE,
+        key = "'page:' + #afterId + ':' + #limit + ':' + #sortKey + ':' + #descending")
+    @Transactional(readOnly = true)
+    public List<ProductView> findPage(Long afterId, int limit, ProductSortKey sortKey, boolean descending) {
+        return productRepository.findPage(afterId, limit, sortKey, descending);
     }
 
-    //IDで検索
+    // 全件をカーソルで1行ずつ読み出す（NDJSONエクスポート用）
+    public void streamAll(Consumer<Product> consumer) {
+        productRepository.streamAll(consumer);
+    }
+
+    //IDで検索（主キー検索 + リードスルーキャッシュ）
+    @Cacheable(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#id", unless = "#result == null")
+    @Transactional(readOnly = true)
     public Optional<Product> findProductsById(Long id) {
-    	return findAll().stream()
-                .filter(product -> product.getId().equals(id))
-                .findFirst(); //最初に見つかった1件をOptionalとして返す
+    	return productRepository.findById(id);
     }
 
-    // 名前で検索
-    public List<Product> findProductsByName(String name) {
-        return productRepository.findByName(name);
+    // 名前で検索（完全一致）
+    @Transactional(readOnly = true)
+    public List<ProductView> findProductsByName(String name) {
+        return productRepository.findViewsByName(name);
+    }
+
+    // 名前・説明文の部分一致検索（転置インデックスで関連度の高い順に最大 limit 件）
+    @Cacheable(cacheNames = CacheConfig.PRODUCT_QUERY_CACHE, key = "'search:' + #limit + ':' + #query")
+    @Transactional(readOnly = true)
+    public List<ProductView> searchProducts(String query, int limit) {
+        List<Long> ids = productSearchIndex.search(query, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // IN 検索は順序を保証しないため、検索結果の順位で並べ直す
+        Map<Long, Integer> rank = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            rank.put(ids.get(i), i);
+        }
+        List<ProductView> products = new ArrayList<>(productRepository.findViewsByIdIn(ids));
+        products.sort(Comparator.comparingInt(product -> rank.get(product.id())));
+        return products;
     }
 
      //商品の更新
+	@Caching(evict = {
+	    @CacheEvict(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#id"),
+	    @CacheEvict(cacheNames = CacheConfig.PRODUCT_QUERY_CACHE, allEntries = true)
+	})
 	public Product updateProductWithImage(Long id, Product productDetails, MultipartFile imageFile) throws IOException {
 	    //IDから商品を検索
 		Product product = productRepository.findById(id)
 	        .orElseThrow(() -> new ProductNotFoundException("商品ID: " + id + " が見つかりません。"));
 
-	    // ファイルの保存処理
+	    // ファイルの保存処理（縮小版はバックグラウンドで生成される）
+	    String imageUrl = null;
 	    if (imageFile != null && !imageFile.isEmpty()) {
-	        // ファイル名を作成（例: id_オリジナルファイル名）d
-	        String filename = id + "_" + imageFile.getOriginalFilename();
-	        Path uploadPath = Paths.get(UPLOAD_DIR);
-
-	        // ディレクトリが存在しない場合は作成
-	        if (!Files.exists(uploadPath)) {
-	            Files.createDirectories(uploadPath);
-	        }
-
-	        // ファイルを保存
-	        Path filePath = uploadPath.resolve(filename);
-	        //上書きモード
-	        Files.copy(imageFile.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
 	        // 💡 データベースには、ブラウザからアクセス可能なURLパスを保存
-	        product.setImageUrl("/images/" + filename);
+	        imageUrl = imageStorageService.store(imageFile);
 	    }
-	    // 💡 ファイルが提供されなかった場合、imageUrlは更新しない（既存の値を保持）
 
-	    // 2. 他のデータの上書き
-	    product.setName(productDetails.getName());
-	    product.setPrice(productDetails.getPrice());
-	    product.setStock(productDetails.getStock());
-	    product.setDescription(productDetails.getDescription());
-	    // imageUrl は上記で更新済み
+	    String newImageUrl = imageUrl;
+	    Product savedProduct = saveWithRetry(product, latest -> {
+	        // 💡 ファイルが提供されなかった場合、imageUrlは更新しない（既存の値を保持）
+	        if (newImageUrl != null) {
+	            latest.setImageUrl(newImageUrl);
+	        }
 
-	    return productRepository.save(product);
+	        // 2. 他のデータの上書き
+	        latest.setName(productDetails.getName());
+	        latest.setPrice(productDetails.getPrice());
+	        // 在庫を分割している商品は、分割を解除しないと在庫数を変更できない（スロットの分は上書きしない）
+	        if (latest.getStockSlots() == 0) {
+	            latest.setStock(productDetails.getStock());
+	        } else if (productDetails.getStock() != latest.getStock()) {
+	            throw new IllegalArgumentException("在庫を分割している商品の在庫数は変更できません。分割を解除してから変更してください。");
+	        }
+	        latest.setDescription(productDetails.getDescription());
+	    });
+	    eventPublisher.publishEvent(ProductChangedEvent.updated(savedProduct));
+	    return savedProduct;
 	}
 
 	/**
 	 * ファイル保存と imageUrl の更新のみを行う（新規登録時に使用）
 	 */
+	@Caching(evict = {
+	    @CacheEvict(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#id"),
+	    @CacheEvict(cacheNames = CacheConfig.PRODUCT_QUERY_CACHE, allEntries = true)
+	})
 	public Product updateImageOnly(Long id, MultipartFile imageFile) throws IOException {
 		//IDで商品検索
 	    Product product = productRepository.findById(id)
 	        .orElseThrow(() -> new ProductNotFoundException("商品ID: " + id + " が見つかりません。"));
 
+	    String imageUrl = null;
 	    if (imageFile != null && !imageFile.isEmpty()) {
+	        // ファイルを保存し、データベースにはブラウザからアクセス可能なURLパスを保存
+	        imageUrl = imageStorageService.store(imageFile);
+	    }
+
+	    // 商品情報全体ではなく、imageUrlのみが更新される
+	    String newImageUrl = imageUrl;
+	    Product savedProduct = saveWithRetry(product, latest -> {
+	        if (newImageUrl != null) {
+	            latest.setImageUrl(newImageUrl);
+	        }
+	    });
+	    eventPublisher.publishEvent(ProductChangedEvent.updated(savedProduct));
+	    return savedProduct;
+	}
+
+	/**
+	 * 変更を適用して保存する
+	 * 読み込んでから保存するまでに注文などで同じ商品が更新され、バージョンが競合した場合は
+	 * 最新の商品を読み直して変更を適用し直す。
+	 */
+	private Product saveWithRetry(Product product, Consumer<Product> changes) {
+	    for (int attempt = 1; ; attempt++) {
+	        changes.accept(product);
+	        try {
+	            return productRepository.save(product);
+	        } catch (ObjectOptimisticLockingFailureException e) {
+	            if (attempt >= MAX_SAVE_ATTEMPTS) {
+	                throw e;
+	            }
+	            Long id = product.getId();
+	            product = productRepository.findById(id)
+	                .orElseThrow(() -> new ProductNotFoundException("商品ID: " + id + " が見つかりません。"));
+	        }
+	    }
+	}
+
+	/**
+	 * 商品の部分更新（指定した項目の列だけをUPDATEする）
+	 * 商品を読み込まずに1文で更新するため、注文による在庫の更新と競合しても再試行は要らない。
+	 */
+	@Caching(evict = {
+	    @CacheEvict(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#id"),
+	    @CacheEvict(cacheNames = CacheConfig.PRODUCT_QUERY_CACHE, allEntries = true)
+	})
+	@Transactional
+	public Product patchProduct(Long id, ProductPatch patch) {
+	    validate(id, patch);
+	    if (patch.stock() != null) {
+	        rejectShardedStockChange(List.of(id));
+	    }
+
+	    StringBuilder sql = new StringBuilder("update product set ");
+	    List<Object> args = new ArrayList<>();
+	    if (patch.name() != null) {
+	        sql.append("name = ?, ");
+	        args.add(patch.name());
+	    }
+	    if (patch.price() != null) {
+	        sql.append("price = ?, ");
+	        args.add(patch.price());
+	    }
+	    if (patch.stock() != null) {
+	        // 確認の後に分割された場合もスロットの分を二重に持たないよう、分割していない商品だけ変更する
+	        sql.append("stock = case when stock_slots = 0 then ? else stock end, ");
+	        args.add(patch.stock());
+	    }
+	    if (patch.description() != null) {
+	        sql.append("description = ?, ");
+	        args.add(patch.description());
+	    }
+	    sql.append("version = version + 1, last_modified = ? where id = ? and " + Product.NOT_DELETED);
+	    args.add(Timestamp.from(Instant.now()));
+	    args.add(id);
 
-	        // ファイル名を作成（例: id_オリジナルファイル名）
-	        String filename = id + "_" + imageFile.getOriginalFilename();
-	        Path uploadPath = Paths.get(UPLOAD_DIR);
+	    // JDBCで直接更新するため、未反映の変更を先に書き出し、更新後は読み直す
+	    entityManager.flush();
+	    if (jdbcTemplate.update(sql.toString(), args.toArray()) == 0) {
+	        throw new ProductNotFoundException("商品ID: " + id + " が見つかりません。");
+	    }
+	    entityManager.clear();
+	    Product savedProduct = productRepository.findById(id)
+	        .orElseThrow(() -> new ProductNotFoundException("商品ID: " + id + " が見つかりません。"));
+	    eventPublisher.publishEvent(ProductChangedEvent.updated(savedProduct));
+	    return savedProduct;
+	}
 
-	        if (!Files.exists(uploadPath)) {
-	            Files.createDirectories(uploadPath);
+	/**
+	 * 商品の一括の部分更新（価格の一斉改定など）
+	 * 500件ずつ1文のMERGEで更新し、全体を1トランザクションで行う（1件でもエラーの場合は何も更新しない）。
+	 * 商品詳細のキャッシュは、コミット後の商品の変更の通知で商品ごとに破棄される（CatalogChangeTracker）。
+	 */
+	@CacheEvict(cacheNames = CacheConfig.PRODUCT_QUERY_CACHE, allEntries = true)
+	@Transactional
+	public PatchResult patchProducts(List<ProductPatch> patches) {
+	    if (patches == null || patches.isEmpty()) {
+	        throw new IllegalArgumentException("更新する商品を1件以上指定してください。");
+	    }
+	    if (patches.size() > MAX_PATCH_SIZE) {
+	        throw new IllegalArgumentException("一度に更新できる商品は" + MAX_PATCH_SIZE + "件までです。");
+	    }
+	    Set<Long> ids = new HashSet<>();
+	    List<Long> stockIds = new ArrayList<>();
+	    for (ProductPatch patch : patches) {
+	        if (patch.id() == null) {
+	            throw new IllegalArgumentException("更新する商品の id を指定してください。");
 	        }
+	        if (!ids.add(patch.id())) {
+	            throw new IllegalArgumentException("同じ商品が複数回指定されています。（商品ID: " + patch.id() + "）");
+	        }
+	        validate(patch.id(), patch);
+	        if (patch.stock() != null) {
+	            stockIds.add(patch.id());
+	        }
+	    }
+	    rejectShardedStockChange(stockIds);
 
-	        // ファイルを保存
-	        Path filePath = uploadPath.resolve(filename);
-	        Files.copy(imageFile.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+	    // 注文の在庫引き当てと同じく商品ID順に更新する（行ロックの順序を揃えてデッドロックを防ぐ）
+	    List<ProductPatch> sorted = new ArrayList<>(patches);
+	    sorted.sort(Comparator.comparing(ProductPatch::id));
+	    Timestamp now = Timestamp.from(Instant.now());
+	    entityManager.flush();
+	    int updated = 0;
+	    for (int from = 0; from < sorted.size(); from += PATCH_CHUNK_SIZE) {
+	        updated += mergePatches(sorted.subList(from, Math.min(from + PATCH_CHUNK_SIZE, sorted.size())), now);
+	    }
+	    if (updated < sorted.size()) {
+	        Set<Long> missing = new HashSet<>(ids);
+	        for (int from = 0; from < sorted.size(); from += PATCH_CHUNK_SIZE) {
+	            List<Long> chunk = sorted.subList(from, Math.min(from + PATCH_CHUNK_SIZE, sorted.size()))
+	                .stream().map(ProductPatch::id).toList();
+	            missing.removeAll(jdbcTemplate.queryForList(
+	                "select id from product where " + Product.NOT_DELETED + " and id in (" + placeholders(chunk.size()) + ")",
+	                Long.class, chunk.toArray()));
+	        }
+	        throw new ProductNotFoundException("商品ID: " + Collections.min(missing) + " が見つかりません。");
+	    }
 
-	        // データベースには、ブラウザからアクセス可能なURLパスを保存
-	        product.setImageUrl("/images/" + filename);
+	    // 検索インデックス・キャッシュ・変更の配信への通知（コミット後）
+	    entityManager.clear();
+	    for (Product product : productRepository.findAllById(ids)) {
+	        eventPublisher.publishEvent(ProductChangedEvent.updated(product));
 	    }
+	    return new PatchResult(updated);
+	}
 
-	    // 商品情報全体ではなく、imageUrlのみが更新される
-	    return productRepository.save(product);
+	// 指定された項目だけを変更する（null の項目は元の値のまま）
+	private int mergePatches(List<ProductPatch> patches, Timestamp now) {
+	    StringBuilder values = new StringBuilder();
+	    List<Object> args = new ArrayList<>(patches.size() * 5 + 1);
+	    for (ProductPatch patch : patches) {
+	        if (values.length() > 0) {
+	            values.append(", ");
+	        }
+	        values.append("(cast(? as bigint), cast(? as varchar(255)), cast(? as integer), cast(? as integer), cast(? as varchar(255)))");
+	        args.add(patch.id());
+	        args.add(patch.name());
+	        args.add(patch.price());
+	        args.add(patch.stock());
+	        args.add(patch.description());
+	    }
+	    args.add(now);
+	    return jdbcTemplate.update(
+	        "merge into product p using (values " + values + ") as v(id, name, price, stock, description)"
+	            + " on p.id = v.id and p." + Product.NOT_DELETED
+	            + " when matched then update set"
+	            + " name = coalesce(v.name, p.name),"
+	            + " price = coalesce(v.price, p.price),"
+	            + " stock = case when p.stock_slots = 0 then coalesce(v.stock, p.stock) else p.stock end,"
+	            + " description = coalesce(v.description, p.description),"
+	            + " version = p.version + 1, last_modified = ?",
+	        args.toArray());
+	}
+
+	private static void validate(Long id, ProductPatch patch) {
+	    if (patch.isEmpty()) {
+	        throw new IllegalArgumentException("変更する項目を1つ以上指定してください。（商品ID: " + id + "）");
+	    }
+	    if (patch.price() != null && patch.price() < 0) {
+	        throw new IllegalArgumentException("価格は0以上にする必要があります。");
+	    }
+	    if (patch.stock() != null && patch.stock() < 0) {
+	        throw new IllegalArgumentException("在庫は0以上にする必要があります。");
+	    }
+	    // 列の長さを超えるとDBでエラーになり、一括更新では全体が失敗するため、ここで商品IDを付けて断る
+	    if (patch.name() != null && patch.name().length() > Product.MAX_TEXT_LENGTH) {
+	        throw new IllegalArgumentException("商品名は" + Product.MAX_TEXT_LENGTH + "文字以内で指定してください。（商品ID: " + id + "）");
+	    }
+	    if (patch.description() != null && patch.description().length() > Product.MAX_TEXT_LENGTH) {
+	        throw new IllegalArgumentException("説明文は" + Product.MAX_TEXT_LENGTH + "文字以内で指定してください。（商品ID: " + id + "）");
+	    }
+	}
+
+	// 在庫を分割している商品は、分割を解除しないと在庫数を変更できない
+	private void rejectShardedStockChange(List<Long> ids) {
+	    for (int from = 0; from < ids.size(); from += PATCH_CHUNK_SIZE) {
+	        List<Long> chunk = ids.subList(from, Math.min(from + PATCH_CHUNK_SIZE, ids.size()));
+	        List<Long> sharded = jdbcTemplate.queryForList(
+	            "select id from product where stock_slots > 0 and id in (" + placeholders(chunk.size()) + ")",
+	            Long.class, chunk.toArray());
+	        if (!sharded.isEmpty()) {
+	            throw new IllegalArgumentException("在庫を分割している商品の在庫数は変更できません。分割を解除してから変更してください。（商品ID: "
+	                + sharded.get(0) + "）");
+	        }
+	    }
+	}
+
+	private static String placeholders(int count) {
+	    return String.join(", ", Collections.nCopies(count, "?"));
 	}
 
      //商品の削除
+    /**
+     * 商品に削除の印を付ける（行・画像ファイルは ProductPurger がバックグラウンドで削除する）
+     * 1文のUPDATEだけで戻り、以降は一覧・検索・注文の対象にならない。注文の履歴（orders）は残す。
+     */
+    @Caching(evict = {
+        @CacheEvict(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#id"),
+        @CacheEvict(cacheNames = CacheConfig.PRODUCT_QUERY_CACHE, allEntries = true)
+    })
+    @Transactional
     public void deleteProduct(Long id) {
-        // 1. IDで商品を見つける
-        Product product = productRepository.findById(id)
-            .orElseThrow(() -> new ProductNotFoundException("商品ID: " + id + " が見つかりません。"));
+        Timestamp now = Timestamp.from(Instant.now());
 
-        // 2. DBから削除する
-        productRepository.delete(product);
+        // JDBCで直接更新するため、未反映の変更を先に書き出し、更新後は永続化コンテキストを空にする
+        entityManager.flush();
+        int updated = jdbcTemplate.update(
+            "update product set deleted_at = ?, version = version + 1, last_modified = ? where id = ? and " + Product.NOT_DELETED,
+            now, now, id);
+        if (updated == 0) {
+            throw new ProductNotFoundException("商品ID: " + id + " が見つかりません。");
+        }
+        entityManager.clear();
+        eventPublisher.publishEvent(ProductChangedEvent.deleted(id));
 
         // 💡 削除されたことを示すため void (何も返さない)
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package com.example.my_web_app.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.my_web_app.model.Order;
+
+/**
+ * 売上の集計（プロセス内で注文ごとに加算していく）
+ *
+ * 商品ごとの販売数・売上と、1時間ごとの注文数・販売数・売上を持ち、レポートを orders の全件走査なしで返す。
+ * 起動時にDBの orders から1回だけ集計し、以降は注文のコミットごとに加算する。
+ * 起動時の集計は Web サーバーが受け付けを始める前（全Beanの初期化後）に行うため、注文の取りこぼしや二重計上はない。
+ */
+@Component
+public class SalesAggregates implements SmartInitializingSingleton {
+
+    // 1回のレポートで返す時間帯の上限（31日分）
+    public static final int MAX_HOURS = 24 * 31;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 商品ID -> 販売数・売上
+    private final Map<Long, Counters> byProduct = new ConcurrentHashMap<>();
+
+    // 時間帯（UTCの毎正時）-> 注文数・販売数・売上
+    private final NavigableMap<Instant, Counters> byHour = new ConcurrentSkipListMap<>();
+
+    private static final class Counters {
+        private final LongAdder orders = new LongAdder();
+        private final LongAdder units = new LongAdder();
+        private final LongAdder revenue = new LongAdder();
+        private volatile String productName;
+
+        private void add(long orderCount, long unitCount, long amount) {
+            orders.add(orderCount);
+            units.add(unitCount);
+            revenue.add(amount);
+        }
+    }
+
+    /**
+     * 商品ごとの売上
+     */
+    public record ProductSales(Long productId, String productName, long orders, long unitsSold, long revenue) {}
+
+    /**
+     * 時間帯ごとの売上（hour はその時間帯の開始時刻）
+     */
+    public record HourlySales(Instant hour, long orders, long unitsSold, long revenue) {}
+
+    /**
+     * 売れ筋の並び順
+     */
+    public enum Ranking {
+        UNITS(Comparator.comparingLong(ProductSales::unitsSold)),
+        REVENUE(Comparator.comparingLong(ProductSales::revenue));
+
+        private final Comparator<ProductSales> comparator;
+
+        Ranking(Comparator<ProductSales> comparator) {
+            // 同じ値の場合は商品IDの小さい方を上位にする
+            this.comparator = comparator.thenComparing(ProductSales::productId, Comparator.reverseOrder());
+        }
+
+        public static Ranking from(String value) {
+            for (Ranking ranking : values()) {
+                if (ranking.name().equalsIgnoreCase(value)) {
+                    return ranking;
+                }
+            }
+            throw new IllegalArgumentException("並び順の指定が不正です: " + value);
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    // DBの orders から集計し直す（商品ごと・時間帯ごとに1回ずつの GROUP BY）
+    public void rebuild() {
+        byProduct.clear();
+        byHour.clear();
+        jdbcTemplate.query(
+            "select product_id, max(product_name), count(*), sum(quantity), sum(total) from orders group by product_id",
+            rs -> {
+                Counters counters = byProduct.computeIfAbsent(rs.getLong(1), id -> new Counters());
+                counters.productName = rs.getString(2);
+                counters.add(rs.getLong(3), rs.getLong(4), rs.getLong(5));
+            });
+        jdbcTemplate.query(
+            "select date_trunc('HOUR', ordered_at), count(*), sum(quantity), sum(total) from orders"
+                + " where ordered_at is not null group by date_trunc('HOUR', ordered_at)",
+            rs -> {
+                Instant hour = rs.getObject(1, OffsetDateTime.class).toInstant().truncatedTo(ChronoUnit.HOURS);
+                byHour.computeIfAbsent(hour, h -> new Counters()).add(rs.getLong(2), rs.getLong(3), rs.getLong(4));
+            });
+    }
+
+    // 注文の登録に合わせて加算する（トランザクション中ならコミット後。ロールバックされた注文は数えない）
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        for (Order order : event.orders()) {
+            add(order);
+        }
+    }
+
+    public void add(Order order) {
+        Counters product = byProduct.computeIfAbsent(order.getProductId(), id -> new Counters());
+        product.add(1, order.getQuantity(), order.getTotal());
+        if (order.getProductName() != null) {
+            product.productName = order.getProductName();
+        }
+        if (order.getOrderedAt() != null) {
+            byHour.computeIfAbsent(order.getOrderedAt().truncatedTo(ChronoUnit.HOURS), h -> new Counters())
+                .add(1, order.getQuantity(), order.getTotal());
+        }
+    }
+
+    /**
+     * 売れ筋の商品（上位 limit 件）
+     * 注文の件数ではなく商品の数に比例する（上位 limit 件だけをヒープで残す）。
+     */
+    public List<ProductSales> topSellers(int limit, Ranking ranking) {
+        PriorityQueue<ProductSales> top = new PriorityQueue<>(limit + 1, ranking.comparator);
+        byProduct.forEach((productId, counters) -> {
+            top.add(snapshot(productId, counters));
+            if (top.size() > limit) {
+                top.poll(); // 最下位を捨てる
+            }
+        });
+        List<ProductSales> result = new ArrayList<>(top);
+        result.sort(ranking.comparator.reversed());
+        return result;
+    }
+
+    /**
+     * 時間帯ごとの売上（from を含む時間帯から to を含まない時間帯まで。注文のない時間帯は0で埋める）
+     */
+    public List<HourlySales> revenueByHour(Instant from, Instant to) {
+        Instant start = from.truncatedTo(ChronoUnit.HOURS);
+        if (!start.isBefore(to)) {
+            throw new IllegalArgumentException("期間の指定が不正です（from は to より前を指定してください）。");
+        }
+        if (Duration.between(start, to).toHours() >= MAX_HOURS) {
+            throw new IllegalArgumentException("期間は" + MAX_HOURS + "時間以内で指定してください。");
+        }
+        List<HourlySales> result = new ArrayList<>();
+        for (Instant hour = start; hour.isBefore(to); hour = hour.plus(1, ChronoUnit.HOURS)) {
+            Counters counters = byHour.get(hour);
+            result.add(counters == null
+                ? new HourlySales(hour, 0, 0, 0)
+                : new HourlySales(hour, counters.orders.sum(), counters.units.sum(), counters.revenue.sum()));
+        }
+        return result;
+    }
+
+    private static ProductSales snapshot(Long productId, Counters counters) {
+        return new ProductSales(productId, counters.productName,
+            counters.orders.sum(), counters.units.sum(), counters.revenue.sum());
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.my_web_app.service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.my_web_app.ProductNotFoundException;
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.ProductRepository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+
+/**
+ * 在庫の分割（セール中の人気商品向け）
+ *
+ * 分割した商品の在庫は product_stock_slot の N 行に分けて持ち、注文はランダムに選んだスロットから順に
+ * 他の注文がロックしていない在庫の足りる1行を探して減らす。同じ商品への注文が別々の行を更新するため、
+ * 商品の行（とJVM内のロック）で直列化されず、スロットの数まで並行に処理できる。
+ * そのようなスロットが無い場合は、全スロットを（スロット番号順に）ロックして合計から引き当て、
+ * 残りを均等に配り直す。合計が足りない場合だけ在庫不足とする。
+ * H2 は他の注文が更新した直後の行を、ロックしてから条件に合わないと分かってもロックしたままにするため、
+ * まれに全スロットのロックがデッドロックになる（DBがトランザクションを取り消し、OrderService が注文をやり直す）。
+ * 在庫の合計は Product.getStock()（分割していない分 + スロットの合計）で返る。
+ */
+@Service
+public class ShardedStockService implements SmartInitializingSingleton {
+
+    /**
+     * 引き当ての結果
+     */
+    public enum Result {
+        RESERVED,
+        INSUFFICIENT,
+        // 分割していない商品（呼び出し元で通常の引き当てを行う）
+        NOT_SHARDED
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.stock.sharding.max-slots:64}")
+    private int maxSlots;
+
+    // 分割している商品のID -> スロット数（DBの product.stock_slots の写し。注文ごとにDBを引かないため）
+    private final Map<Long, Integer> slotCounts = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        jdbcTemplate.query("select id, stock_slots from product where stock_slots > 0 and " + Product.NOT_DELETED,
+            rs -> {
+                slotCounts.put(rs.getLong(1), rs.getInt(2));
+            });
+    }
+
+    // 削除された商品のスロットを消す（コミット後）
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.type() == ProductChangedEvent.Type.DELETED) {
+            jdbcTemplate.update("delete from product_stock_slot where product_id = ?", event.productId());
+            slotCounts.remove(event.productId());
+        }
+    }
+
+    public boolean isSharded(Long productId) {
+        return slotCounts.containsKey(productId);
+    }
+
+    /**
+     * 在庫を数量分だけ引き当てる（呼び出し元のトランザクションがロールバックされた場合は取り消される）
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public Result reserve(Long productId, int quantity) {
+        Integer slots = slotCounts.get(productId);
+        if (slots != null) {
+            // ランダムなスロットから順に、他の注文がロックしていない（SKIP LOCKED）在庫の足りるスロットを探す。
+            // H2 は他の注文のロック解除を待った行を、条件に合わなくてもロックしたままにするため、ここでは待たない
+            // （待って1行ロックしたまま全スロットのロックに進むと、それを待つ注文とデッドロックする）
+            int start = ThreadLocalRandom.current().nextInt(slots);
+            for (int i = 0; i < slots; i++) {
+                int slot = (start + i) % slots;
+                if (!jdbcTemplate.queryForList(
+                        "select stock from product_stock_slot where product_id = ? and slot = ? and stock >= ? for update skip locked",
+                        Integer.class, productId, slot, quantity).isEmpty()) {
+                    jdbcTemplate.update("update product_stock_slot set stock = stock - ? where product_id = ? and slot = ?",
+                        quantity, productId, slot);
+                    return Result.RESERVED;
+                }
+            }
+        }
+        return reserveFromAllSlots(productId, quantity);
+    }
+
+    /**
+     * DB上で分割されているかを確認し直す（通常の引き当てに失敗した場合、直前に分割された可能性があるため）
+     */
+    public boolean refresh(Long productId) {
+        List<Integer> slots = jdbcTemplate.queryForList(
+            "select stock_slots from product where id = ?", Integer.class, productId);
+        if (slots.isEmpty() || slots.get(0) == 0) {
+            slotCounts.remove(productId);
+            return false;
+        }
+        slotCounts.put(productId, slots.get(0));
+        return true;
+    }
+
+    /**
+     * 商品の在庫を slots 個に分割し直す（0 の場合は分割をやめて商品の在庫に戻す）
+     * 商品の行と全スロットをロックするため、実行中の注文の完了を待ってから在庫の合計を配り直す。
+     */
+    @Transactional
+    public Product reshard(Long productId, int slots) {
+        if (slots < 0 || slots > maxSlots) {
+            throw new IllegalArgumentException("スロット数は0〜" + maxSlots + "の範囲で指定してください。");
+        }
+        List<Integer> base = jdbcTemplate.queryForList(
+            "select stock from product where id = ? and " + Product.NOT_DELETED + " for update", Integer.class, productId);
+        if (base.isEmpty()) {
+            throw new ProductNotFoundException("商品ID: " + productId + " が見つかりません。");
+        }
+        long total = base.get(0);
+        for (int stock : lockSlots(productId)) {
+            total += stock;
+        }
+
+        entityManager.flush();
+        jdbcTemplate.update("delete from product_stock_slot where product_id = ?", productId);
+        if (slots > 0) {
+            jdbcTemplate.batchUpdate("insert into product_stock_slot (product_id, slot, stock) values (?, ?, ?)",
+                distribute(productId, total, slots));
+        }
+        jdbcTemplate.update(
+            "update product set stock = ?, stock_slots = ?, version = version + 1, last_modified = ? where id = ?",
+            slots > 0 ? 0 : Math.toIntExact(total), slots, Timestamp.from(Instant.now()), productId);
+        entityManager.clear();
+
+        // 注文の振り分けはコミット後に切り替える（それまでの注文は refresh で確認し直す）
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (slots > 0) {
+                    slotCounts.put(productId, slots);
+                } else {
+                    slotCounts.remove(productId);
+                }
+            }
+        });
+        // キャッシュの破棄・検索インデックスの更新（コミット後）
+        Product product = productRepository.findById(productId).orElseThrow();
+        eventPublisher.publishEvent(ProductChangedEvent.updated(product));
+        return product;
+    }
+
+    // 選んだスロットで足りない場合: 全スロットの合計から引き当て、残りを均等に配り直す
+    private Result reserveFromAllSlots(Long productId, int quantity) {
+        List<Integer> stocks = lockSlots(productId);
+        if (stocks.isEmpty()) {
+            slotCounts.remove(productId);
+            return Result.NOT_SHARDED;
+        }
+        long total = 0;
+        for (int stock : stocks) {
+            total += stock;
+        }
+        if (total < quantity) {
+            return Result.INSUFFICIENT;
+        }
+        List<Object[]> args = new ArrayList<>(stocks.size());
+        for (Object[] row : distribute(productId, total - quantity, stocks.size())) {
+            args.add(new Object[] { row[2], productId, row[1] });
+        }
+        jdbcTemplate.batchUpdate("update product_stock_slot set stock = ? where product_id = ? and slot = ?", args);
+        return Result.RESERVED;
+    }
+
+    // 商品の全スロットの在庫（ロックはスロット番号順に取る）
+    private List<Integer> lockSlots(Long productId) {
+        return jdbcTemplate.queryForList(
+            "select stock from product_stock_slot where product_id = ? order by slot for update", Integer.class, productId);
+    }
+
+    // total を slots 個に均等に分ける（端数は先頭のスロットから1つずつ）: {商品ID, スロット番号, 在庫}
+    private static List<Object[]> distribute(Long productId, long total, int slots) {
+        List<Object[]> rows = new ArrayList<>(slots);
+        for (int slot = 0; slot < slots; slot++) {
+            rows.add(new Object[] { productId, slot, Math.toIntExact(total / slots + (slot < total % slots ? 1 : 0)) });
+        }
+        return rows;
+    }
+}
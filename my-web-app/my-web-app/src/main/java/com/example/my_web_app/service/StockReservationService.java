@@ -0,0 +1,191 @@
+package com.example.my_web_app.service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.my_web_app.OrderBusyException;
+import com.example.my_web_app.ProductNotFoundException;
+import com.example.my_web_app.metrics.OrderMetrics;
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.ProductRepository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+
+/**
+ * 在庫の引き当て
+ *
+ * 在庫チェックと減算は条件付きUPDATE（stock >= 数量 のときだけ減らす）で行うため、
+ * 同時に注文が来ても在庫がマイナスになることはない。
+ * さらに同じ商品への注文はJVM内のストライプロックでトランザクション終了まで直列化し、
+ * 人気商品に注文が集中したときにDBの行ロック待ち（タイムアウト）が積み上がらないようにする。
+ * 在庫を分割した商品（ShardedStockService）はロックを取らず、スロット単位で引き当てる。
+ */
+@Service
+public class StockReservationService {
+
+    // ロックの本数（商品IDのハッシュで振り分ける。2のべき乗にする）
+    private static final int STRIPES = 256;
+
+    // ロック待ちの上限（これを超えたら混雑として注文を断る）
+    private static final long LOCK_TIMEOUT_MILLIS = 5_000;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private OrderMetrics orderMetrics;
+
+    @Autowired
+    private ShardedStockService shardedStockService;
+
+    public StockReservationService() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock(true); // 到着順に処理する
+        }
+    }
+
+    /**
+     * 在庫を数量分だけ引き当てる
+     * 呼び出し元のトランザクションがロールバックされた場合は在庫の減算も取り消される。
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void reserve(Long productId, int quantity) {
+        if (quantity <= 0) {
+            orderMetrics.rejected(OrderMetrics.INVALID);
+            throw new IllegalArgumentException("数量は1以上で指定してください。");
+        }
+
+        if (shardedStockService.isSharded(productId) && reserveSharded(productId, quantity)) {
+            return;
+        }
+
+        lockUntilCompletion(stripeOf(productId));
+
+        if (productRepository.decrementStock(productId, quantity, Instant.now()) == 0) {
+            // 更新できなかった理由を判定する
+            if (!productRepository.existsById(productId)) {
+                orderMetrics.rejected(OrderMetrics.NOT_FOUND);
+                throw new ProductNotFoundException("商品ID: " + productId + " が見つかりません。");
+            }
+            // 直前に在庫が分割された場合は、スロットから引き当てる
+            if (shardedStockService.refresh(productId) && reserveSharded(productId, quantity)) {
+                return;
+            }
+            orderMetrics.rejected(OrderMetrics.INSUFFICIENT_STOCK);
+            throw new IllegalArgumentException("在庫が不足しています。");
+        }
+    }
+
+    /**
+     * 複数商品の在庫をまとめて引き当てる（在庫の減算は1回のJDBCバッチで送る）
+     * ロックはストライプの番号順に取得するため、同時に実行されてもロックの順序が入れ違わない
+     * （商品IDの順では、ストライプが (ID % 256) で巡回するため {1, 2} と {2, 257} のように順序が逆になる）。
+     * 1つでも在庫が足りない商品があれば例外を投げ、呼び出し元のトランザクションごとロールバックさせる。
+     *
+     * 在庫を分割した商品はスロットから引き当て、バッチには含めない。
+     *
+     * @param quantities 商品ID -> 数量（IDの昇順に並んでいること）
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void reserveAll(SortedMap<Long, Integer> quantities) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            if (line.getValue() <= 0) {
+                orderMetrics.rejected(OrderMetrics.INVALID);
+                throw new IllegalArgumentException("数量は1以上で指定してください。");
+            }
+            if (shardedStockService.isSharded(line.getKey()) && reserveSharded(line.getKey(), line.getValue())) {
+                continue;
+            }
+            args.add(new Object[] { line.getValue(), now, line.getKey(), line.getValue() });
+        }
+        SortedSet<Integer> stripes = new TreeSet<>();
+        for (Object[] arg : args) {
+            stripes.add(stripeOf((Long) arg[2]));
+        }
+        stripes.forEach(this::lockUntilCompletion);
+
+        // JDBCで直接更新するため、前後で永続化コンテキストとDBの内容を揃える
+        // （decrementStock の flushAutomatically / clearAutomatically と同じ扱い）
+        entityManager.flush();
+        int[] updated = jdbcTemplate.batchUpdate(
+            "update product set stock = stock - ?, version = version + 1, last_modified = ? where id = ? and stock >= ? and "
+                + Product.NOT_DELETED, args);
+        entityManager.clear();
+        for (int i = 0; i < updated.length; i++) {
+            Long productId = (Long) args.get(i)[2];
+            if (updated[i] == 0 && !(shardedStockService.refresh(productId) && reserveSharded(productId, (Integer) args.get(i)[0]))) {
+                orderMetrics.rejected(OrderMetrics.INSUFFICIENT_STOCK);
+                throw new IllegalArgumentException("在庫が不足しています。（商品ID: " + productId + "）");
+            }
+        }
+    }
+
+    // 分割した在庫から引き当てる（分割していなかった場合は false を返し、通常の引き当てに戻す）
+    private boolean reserveSharded(Long productId, int quantity) {
+        ShardedStockService.Result result = shardedStockService.reserve(productId, quantity);
+        if (result == ShardedStockService.Result.INSUFFICIENT) {
+            orderMetrics.rejected(OrderMetrics.INSUFFICIENT_STOCK);
+            throw new IllegalArgumentException("在庫が不足しています。（商品ID: " + productId + "）");
+        }
+        return result == ShardedStockService.Result.RESERVED;
+    }
+
+    private static int stripeOf(Long productId) {
+        return Long.hashCode(productId) & (STRIPES - 1);
+    }
+
+    // ストライプのロックを取り、トランザクションの完了（コミット/ロールバック）時に解放する
+    private void lockUntilCompletion(int stripe) {
+        ReentrantLock lock = locks[stripe];
+        if (lock.isHeldByCurrentThread()) {
+            return; // 同じトランザクション内で既に取得済み（同じストライプの別商品を含む）
+        }
+        try {
+            // 空いていればすぐ取る。他の注文が持っている場合は競合として待ち時間を記録する
+            if (!lock.tryLock(0, TimeUnit.NANOSECONDS)) {
+                long waitStart = System.nanoTime();
+                boolean acquired = lock.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                orderMetrics.conflict(System.nanoTime() - waitStart);
+                if (!acquired) {
+                    orderMetrics.rejected(OrderMetrics.BUSY);
+                    throw new OrderBusyException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("在庫の引き当てが中断されました。", e);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+}
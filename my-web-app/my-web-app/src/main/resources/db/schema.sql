@@ -0,0 +1,64 @@
+-- ------------------------------------
+-- テーブル定義（prod プロファイル用）
+-- ------------------------------------
+-- prod では Hibernate にテーブルを作らせず（ddl-auto=validate）、起動時にこのファイルを実行する。
+-- エンティティに項目を追加した場合はここにも追加すること（定義が合わないと起動時の検証で失敗する）。
+-- 既存のDB（ddl-auto=update で作られたもの）にもそのまま使えるよう、存在しない場合だけ作る。
+
+create sequence if not exists product_seq start with 1 increment by 50;
+
+create table if not exists product (
+    id bigint not null,
+    name varchar(255),
+    price integer not null,
+    stock integer not null,
+    description varchar(255),
+    image_url varchar(255),
+    version bigint default 0 not null,
+    last_modified timestamp(6) with time zone,
+    stock_slots integer default 0 not null,
+    deleted_at timestamp(6) with time zone,
+    primary key (id)
+);
+
+-- 論理削除（DELETE /api/products/{id}）の前に作られたDBには列が無いため追加する
+alter table product add column if not exists deleted_at timestamp(6) with time zone;
+
+create table if not exists product_stock_slot (
+    product_id bigint not null,
+    slot integer not null,
+    stock integer not null,
+    primary key (product_id, slot)
+);
+
+create table if not exists orders (
+    id bigint generated by default as identity,
+    product_id bigint,
+    product_name varchar(255),
+    unit_price integer not null,
+    quantity integer not null,
+    total integer not null,
+    ordered_at timestamp(6) with time zone,
+    journal_seq bigint,
+    primary key (id),
+    constraint uk_orders_journal_seq unique (journal_seq)
+);
+
+create table if not exists idempotency_record (
+    idempotency_key varchar(255) not null,
+    request_hash varchar(64) not null,
+    status integer not null,
+    response_body blob,
+    created_at timestamp(6) with time zone,
+    primary key (idempotency_key)
+);
+
+-- 商品ごとの注文の検索（OrderRepository.findByProductId）と有効期限切れのキーの削除に使う
+create index if not exists idx_orders_product_id on orders (product_id);
+create index if not exists idx_idempotency_record_created_at on idempotency_record (created_at);
+-- 削除済みの商品の後片付け（ProductPurger）の対象の検索に使う
+create index if not exists idx_product_deleted_at on product (deleted_at);
+-- 商品一覧の並び替え・キーセットページング（ProductSortKey）に使う。同じ値の商品はIDで並ぶため (列, id) にする
+-- 在庫順は分割した在庫を含む合計で並べるため、インデックスは作らない
+create index if not exists idx_product_price_id on product (price, id);
+create index if not exists idx_product_name_id on product (name, id);
@@ -0,0 +1,71 @@
+package com.example.my_web_app;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+// 💡 制限に掛かりやすい設定で有効にする（注文: 1クライアント2件まで / 一括: 同時実行0件）
+@SpringBootTest(properties = {
+    "app.admission.enabled=true",
+    "app.admission.client-header=X-Client-Id",
+    "app.admission.orders.rate=0.01",
+    "app.admission.orders.burst=2",
+    "app.admission.bulk.max-concurrent=0"
+})
+@AutoConfigureMockMvc
+@Transactional
+@ActiveProfiles("test")
+public class AdmissionControlTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void orderProduct_クライアントごとの上限を超えると429とRetryAfterが返ること() throws Exception {
+        String requestJson = "{\"productId\": 999999, \"quantity\": 1}";
+
+        // GIVEN: バースト分（2件）は受け付けられる（商品が無いため 404）
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/orders").header("X-Client-Id", "client-a")
+                    .contentType("application/json").content(requestJson))
+                    .andExpect(status().isNotFound());
+        }
+
+        // WHEN & THEN: 3件目は 429
+        mockMvc.perform(post("/api/orders").header("X-Client-Id", "client-a")
+                .contentType("application/json").content(requestJson))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER))
+                .andExpect(jsonPath("$.message").exists());
+
+        // 別のクライアントは制限されないこと
+        mockMvc.perform(post("/api/orders").header("X-Client-Id", "client-b")
+                .contentType("application/json").content(requestJson))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void patchProducts_同時実行数を超えると503が返り他のAPIは影響を受けないこと() throws Exception {
+        // WHEN & THEN: 一括更新は受け付けられない
+        mockMvc.perform(patch("/api/products").header("X-Client-Id", "client-c")
+                .contentType("application/json").content("[{\"id\": 1, \"price\": 100}]"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+
+        // 制限の対象外の読み取りはそのまま処理されること
+        mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.ProductRepository;
+
+/**
+ * 負荷テスト: プラットフォームスレッドと仮想スレッドのスループット・p99を比較する
+ * 通常の mvn test では実行されない。実行方法: mvn -Pperf test -Dtest=ExecutionModeLoadTest
+ * 件数・同時実行数は -Dload.requests / -Dload.concurrency で変更できる。
+ */
+@Tag("perf")
+public class ExecutionModeLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionModeLoadTest.class);
+
+    private static final int PRODUCTS = 1_000;
+    private static final int REQUESTS = Integer.getInteger("load.requests", 20_000);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 400);
+
+    private record Result(String mode, double throughput, double p50Millis, double p99Millis, int errors) {}
+
+    @Test
+    void 実行モードごとのスループットとp99を比較する() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        StringBuilder table = new StringBuilder("\nmode       throughput(req/s)   p50(ms)   p99(ms)   errors");
+        for (Result result : List.of(platform, virtual)) {
+            table.append(String.format("%n%-10s %17.0f %9.2f %9.2f %8d",
+                result.mode(), result.throughput(), result.p50Millis(), result.p99Millis(), result.errors()));
+        }
+        log.info(table.toString());
+
+        // 比較が目的のため、性能値ではなく全リクエストが処理されたことだけを検証する
+        assertThat(platform.errors()).isZero();
+        assertThat(virtual.errors()).isZero();
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MyWebAppApplication.class)
+                .profiles("test")
+                .run( // プロファイルの設定より優先させるため、コマンドライン引数として渡す
+                    "--server.port=0",
+                    "--spring.threads.virtual.enabled=" + virtualThreads,
+                    "--spring.datasource.url=jdbc:h2:mem:load-" + mode + ";DB_CLOSE_DELAY=-1",
+                    "--spring.jpa.show-sql=false")) {
+
+            ProductRepository productRepository = context.getBean(ProductRepository.class);
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < PRODUCTS; i++) {
+                ids.add(productRepository.save(new Product("負荷テスト商品" + i, 1000, 1_000_000, "説明" + i)).getId());
+            }
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            return load(mode, baseUrl, ids);
+        }
+    }
+
+    // 商品詳細の取得9割・注文1割のリクエストを、同時実行数 CONCURRENCY で REQUESTS 件送る
+    private Result load(String mode, String baseUrl, List<Long> ids) throws Exception {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        long[] latencies = new long[REQUESTS];
+        AtomicInteger errors = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(REQUESTS);
+            for (int i = 0; i < REQUESTS; i++) {
+                int index = i;
+                inFlight.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+                        HttpRequest request = index % 10 == 0
+                            ? HttpRequest.newBuilder(URI.create(baseUrl + "/api/orders"))
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(
+                                    "{\"productId\": " + id + ", \"productName\": \"負荷テスト\", \"unitPrice\": 1000, \"quantity\": 1, \"total\": 1000}"))
+                                .build()
+                            : HttpRequest.newBuilder(URI.create(baseUrl + "/api/products/" + id)).GET().build();
+
+                        long sent = System.nanoTime();
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        latencies[index] = System.nanoTime() - sent;
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        inFlight.release();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        return new Result(mode,
+            REQUESTS / elapsedSeconds,
+            latencies[(int) (REQUESTS * 0.50)] / 1e6,
+            latencies[Math.min(REQUESTS - 1, (int) (REQUESTS * 0.99))] / 1e6,
+            errors.get());
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.my_web_app.model.Order;
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.OrderRepository;
+import com.example.my_web_app.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// idempotency_record テーブルに保存する場合（app.orders.idempotency.persistent=true）
+@SpringBootTest(properties = "app.orders.idempotency.persistent=true")
+@AutoConfigureMockMvc
+@Transactional // テスト後のDB変更をロールバック
+@ActiveProfiles("test")
+public class IdempotencyRecordTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void orderProduct_処理中のまま残った行はleaseを過ぎると同じキーの再送で引き継がれること() throws Exception {
+        // GIVEN: 処理中（status 0）にプロセスが落ちて残った行
+        Product product = productRepository.save(new Product("引き継ぎテスト商品", 1000, 10, null));
+        String key = UUID.randomUUID().toString();
+        String requestJson = "{\"productId\": " + product.getId() + ", \"quantity\": 1}";
+        jdbcTemplate.update(
+            "insert into idempotency_record (idempotency_key, request_hash, status, created_at) values (?, ?, 0, ?)",
+            key, hash(requestJson), Timestamp.from(Instant.now()));
+
+        // WHEN & THEN: lease（30秒）内の再送は処理中として 409
+        mockMvc.perform(post("/api/orders")
+                .header("Idempotency-Key", key)
+                .contentType("application/json")
+                .content(requestJson))
+                .andExpect(status().isConflict());
+
+        // lease を過ぎた再送は注文を再実行し、結果を保存すること
+        jdbcTemplate.update("update idempotency_record set created_at = ? where idempotency_key = ?",
+            Timestamp.from(Instant.now().minus(Duration.ofMinutes(1))), key);
+        mockMvc.perform(post("/api/orders")
+                .header("Idempotency-Key", key)
+                .contentType("application/json")
+                .content(requestJson))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+
+        assertThat(orderRepository.findByProductId(product.getId())).hasSize(1);
+        assertThat(jdbcTemplate.queryForObject(
+            "select status from idempotency_record where idempotency_key = ?", Integer.class, key)).isEqualTo(201);
+    }
+
+    // IdempotencyService と同じ方法で求めたリクエスト内容のハッシュ
+    private String hash(String requestJson) throws Exception {
+        byte[] json = objectMapper.writeValueAsBytes(objectMapper.readValue(requestJson, Order.class));
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+    }
+}
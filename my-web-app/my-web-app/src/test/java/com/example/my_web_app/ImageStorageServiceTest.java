@@ -0,0 +1,170 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.example.my_web_app.service.ImageStorageService;
+import com.example.my_web_app.service.ImageStorageService.Variant;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ImageStorageServiceTest {
+
+    @TempDir
+    Path imageDir;
+
+    private ImageStorageService service;
+
+    // 縮小版の生成が終わってから一時ディレクトリを削除させる
+    @AfterEach
+    void shutdown() throws Exception {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+        return out.toByteArray();
+    }
+
+    // PNGのヘッダー（IHDR）の幅と高さを書き換える（CRCも計算し直す）
+    private static byte[] withPngSize(byte[] png, int width, int height) {
+        ByteBuffer buffer = ByteBuffer.wrap(png);
+        buffer.putInt(16, width).putInt(20, height);
+        CRC32 crc = new CRC32();
+        crc.update(png, 12, 4 + 13); // チャンクの種類とIHDRのデータ
+        buffer.putInt(29, (int) crc.getValue());
+        return png;
+    }
+
+    @Test
+    void store_元画像を保存し縮小版がバックグラウンドで生成されること() throws Exception {
+        // GIVEN
+        service = new ImageStorageService(imageDir.toString(), new SimpleMeterRegistry());
+        byte[] original = png(1600, 1200);
+
+        // WHEN
+        String url = service.store(new MockMultipartFile("imageFile", "laptop.png", "image/png", original));
+
+        // THEN: 元画像はすぐに保存されている（キーは内容のSHA-256）
+        String key = url.substring(ImageStorageService.IMAGE_URL_PREFIX.length());
+        assertThat(key).matches("[0-9a-f]{64}");
+        Path originalFile = service.resolve(key, Variant.ORIGINAL).orElseThrow().file();
+        assertThat(originalFile.getFileName().toString()).isEqualTo("original.png");
+        assertThat(Files.readAllBytes(originalFile)).isEqualTo(original);
+
+        // 縮小版は非同期で作られ、横幅が縮小されている
+        Path thumb = waitForVariant(key, Variant.THUMB);
+        assertThat(ImageIO.read(thumb.toFile()).getWidth()).isEqualTo(200);
+        assertThat(ImageIO.read(thumb.toFile()).getHeight()).isEqualTo(150);
+        Path medium = waitForVariant(key, Variant.MEDIUM);
+        assertThat(ImageIO.read(medium.toFile()).getWidth()).isEqualTo(800);
+    }
+
+    @Test
+    void delete_再利用されたばかりの画像と使われている画像は削除しないこと() throws Exception {
+        // GIVEN: 保存済みの画像を、同じ内容の再アップロードで再利用する
+        service = new ImageStorageService(imageDir.toString(), new SimpleMeterRegistry());
+        byte[] image = png(10, 10);
+        String url = service.store(new MockMultipartFile("imageFile", "a.png", "image/png", image));
+        String key = url.substring(ImageStorageService.IMAGE_URL_PREFIX.length());
+        waitForVariant(key, Variant.THUMB);
+        waitForVariant(key, Variant.MEDIUM);
+        Path dir = imageDir.resolve(key);
+        Files.setLastModifiedTime(dir, FileTime.from(Instant.now().minus(Duration.ofHours(1))));
+        service.store(new MockMultipartFile("imageFile", "b.png", "image/png", image));
+
+        // WHEN & THEN: 猶予期間内に再利用された画像は、どの商品も使っていなくても削除しない
+        assertThat(service.delete(url, Duration.ofMinutes(10), () -> true)).isFalse();
+        // 使っている商品がある画像は削除しない
+        assertThat(service.delete(url, Duration.ZERO, () -> false)).isFalse();
+        assertThat(dir).exists();
+
+        // 使われていない画像は削除する
+        assertThat(service.delete(url, Duration.ZERO, () -> true)).isTrue();
+        assertThat(dir).doesNotExist();
+    }
+
+    @Test
+    void store_同じ内容の画像は1つだけ保存されること() throws Exception {
+        service = new ImageStorageService(imageDir.toString(), new SimpleMeterRegistry());
+        byte[] image = png(10, 10);
+
+        // WHEN: 同じ画像を別のファイル名で2回アップロード
+        String first = service.store(new MockMultipartFile("imageFile", "a.png", "image/png", image));
+        String second = service.store(new MockMultipartFile("imageFile", "b.png", "image/png", image));
+
+        // THEN: 同じURLになり、保存先ディレクトリも1つだけ（一時ファイルも残らない）
+        assertThat(second).isEqualTo(first);
+        try (var entries = Files.list(imageDir)) {
+            assertThat(entries).hasSize(1);
+        }
+    }
+
+    @Test
+    void resolve_縮小版が無い場合は元画像を返しrequestedがfalseになること() throws Exception {
+        service = new ImageStorageService(imageDir.toString(), new SimpleMeterRegistry());
+        // JavaのImageIOで読めない内容のため縮小版は作られない
+        String url = service.store(new MockMultipartFile("imageFile", "x.webp", "image/webp", new byte[] {1, 2, 3}));
+        String key = url.substring(ImageStorageService.IMAGE_URL_PREFIX.length());
+
+        ImageStorageService.StoredImage image = service.resolve(key, Variant.THUMB).orElseThrow();
+
+        assertThat(image.file().getFileName().toString()).isEqualTo("original.webp");
+        assertThat(image.requested()).isFalse();
+    }
+
+    @Test
+    void store_ヘッダーの画素数が上限を超える画像は展開せずに断ること() throws Exception {
+        service = new ImageStorageService(imageDir.toString(), new SimpleMeterRegistry());
+        // ファイルは小さいが、ヘッダーでは 50000x50000 画素と宣言している
+        byte[] image = withPngSize(png(10, 10), 50_000, 50_000);
+
+        assertThatThrownBy(() -> service.store(new MockMultipartFile("imageFile", "huge.png", "image/png", image)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("画素数");
+
+        // 一時ファイルも残らない
+        try (var entries = Files.list(imageDir)) {
+            assertThat(entries).isEmpty();
+        }
+    }
+
+    @Test
+    void resolve_不正なキーでは画像を返さないこと() throws Exception {
+        service = new ImageStorageService(imageDir.toString(), new SimpleMeterRegistry());
+
+        assertThat(service.resolve("../etc", Variant.ORIGINAL)).isEmpty();
+        assertThat(service.resolve("no_such_key", Variant.MEDIUM)).isEmpty();
+    }
+
+    private Path waitForVariant(String key, Variant variant) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            ImageStorageService.StoredImage image = service.resolve(key, variant).orElseThrow();
+            if (image.requested()) {
+                return image.file();
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("縮小版が生成されませんでした: " + variant);
+    }
+}
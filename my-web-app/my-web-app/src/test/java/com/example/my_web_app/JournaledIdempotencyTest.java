@@ -0,0 +1,71 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.my_web_app.service.JournaledOrderService;
+
+// 💡 ジャーナルへの追記後に書き出しがタイムアウトした注文は、同じキーの再送で再実行されないことを確認する
+@SpringBootTest(properties = "app.orders.idempotency.persistent=true")
+@AutoConfigureMockMvc
+@Transactional // テスト後のDB変更をロールバック
+@ActiveProfiles("test")
+public class JournaledIdempotencyTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 追記は済んだが、ディスクへの書き出しが時間内に終わらなかった状態を再現する
+    @MockBean
+    private JournaledOrderService journaledOrderService;
+
+    @Test
+    void orderProduct_書き出しがタイムアウトした注文は同じキーの再送で再実行されずに202が返ること() throws Exception {
+        // GIVEN
+        given(journaledOrderService.accept(anyList())).willThrow(new OrderNotDurableException(
+            new IllegalStateException("注文ジャーナルの書き出しが時間内に終わりませんでした。")));
+        String key = UUID.randomUUID().toString();
+        String requestJson = "{\"productId\": 1, \"quantity\": 1}";
+
+        // WHEN & THEN: 最初の注文は受け付け済み（202）
+        mockMvc.perform(post("/api/orders")
+                .header("Idempotency-Key", key)
+                .contentType("application/json")
+                .content(requestJson))
+                .andExpect(status().isAccepted())
+                .andExpect(header().doesNotExist("Retry-After"));
+
+        // 同じキーの再送は保存した 202 を返し、注文を再実行しないこと
+        mockMvc.perform(post("/api/orders")
+                .header("Idempotency-Key", key)
+                .contentType("application/json")
+                .content(requestJson))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Idempotent-Replayed", "true"));
+
+        verify(journaledOrderService, times(1)).accept(anyList());
+        assertThat(jdbcTemplate.queryForObject(
+            "select status from idempotency_record where idempotency_key = ?", Integer.class, key)).isEqualTo(202);
+    }
+}
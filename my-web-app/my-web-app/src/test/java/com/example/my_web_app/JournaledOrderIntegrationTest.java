@@ -0,0 +1,179 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.my_web_app.model.Order;
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.OrderRepository;
+import com.example.my_web_app.repository.ProductRepository;
+import com.example.my_web_app.service.JournaledOrderService;
+
+// 💡 注文ジャーナルを有効にした場合、注文はすぐ 202 で受け付けられ、後からDBに登録されることを確認する
+// バックグラウンドでの登録をコミットさせる必要があるため @Transactional は付けない
+@SpringBootTest(properties = {
+    "app.orders.journal.enabled=true",
+    "app.orders.journal.flush-interval=10ms"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class JournaledOrderIntegrationTest {
+
+    @TempDir
+    static Path journalDir;
+
+    @DynamicPropertySource
+    static void journalProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.orders.journal.dir", () -> journalDir.toString());
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JournaledOrderService journaledOrderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long productId;
+
+    @AfterEach
+    void cleanup() {
+        if (productId != null) {
+            orderRepository.deleteAllInBatch(orderRepository.findByProductId(productId));
+            productRepository.deleteById(productId);
+        }
+    }
+
+    // バックグラウンドでのDB登録を待つ
+    private void awaitOrders(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (orderRepository.findByProductId(productId).size() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void orderProduct_ジャーナルに記録して受け付け後からDBに登録されること() throws Exception {
+        // GIVEN
+        Product product = productRepository.save(new Product("ジャーナル商品", 1000, 10, null));
+        productId = product.getId();
+
+        // WHEN & THEN: 202 Accepted（注文IDはまだ採番されていない）
+        mockMvc.perform(post("/api/orders")
+                .contentType("application/json")
+                .content("{\"productId\": " + productId + ", \"productName\": \"ジャーナル商品\", \"unitPrice\": 1000, \"quantity\": 3, \"total\": 3000}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.id").doesNotExist())
+                .andExpect(jsonPath("$.quantity").value(3));
+
+        // バックグラウンドで注文が登録され、在庫が減ること
+        awaitOrders(1);
+        List<Order> orders = orderRepository.findByProductId(productId);
+        assertThat(orders).hasSize(1);
+        assertThat(orders.get(0).getJournalSeq()).isNotNull();
+        assertThat(productRepository.findById(productId).orElseThrow().getStock()).isEqualTo(7);
+    }
+
+    @Test
+    void accept_DB登録前の注文も在庫の確認に含めて売り越さないこと() throws Exception {
+        // GIVEN: 在庫100個
+        Product product = productRepository.save(new Product("ジャーナル同時注文", 1000, 100, null));
+        productId = product.getId();
+
+        // WHEN: 16スレッドから1個ずつ合計300件の注文を同時に送る
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            futures.add(executor.submit(() -> {
+                try {
+                    journaledOrderService.accept(List.of(new Order(null, productId, "ジャーナル同時注文", 1000, 1, 1000)));
+                    accepted.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    rejected.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // THEN: 在庫の数だけ受け付けられ、DBに登録された後の在庫は0になること
+        assertThat(accepted.get()).isEqualTo(100);
+        assertThat(rejected.get()).isEqualTo(200);
+        awaitOrders(100);
+        assertThat(orderRepository.findByProductId(productId)).hasSize(100);
+        assertThat(productRepository.findById(productId).orElseThrow().getStock()).isZero();
+    }
+
+    @Test
+    void accept_商品名が長すぎる注文は受け付けないこと() throws Exception {
+        // GIVEN
+        Product product = productRepository.save(new Product("ジャーナル商品名", 1000, 10, null));
+        productId = product.getId();
+
+        // WHEN & THEN: orders.product_name（255文字）に収まらない商品名は 400
+        mockMvc.perform(post("/api/orders")
+                .contentType("application/json")
+                .content("{\"productId\": " + productId + ", \"productName\": \"" + "あ".repeat(256) + "\", \"quantity\": 1}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void flush_DBに登録できない注文だけを外して他の注文は登録されること() throws Exception {
+        // GIVEN: 数量が100以上の注文をDBが受け付けないようにする
+        Product product = productRepository.save(new Product("ジャーナル登録失敗", 1000, 1000, null));
+        productId = product.getId();
+        jdbcTemplate.execute("alter table orders add constraint ck_orders_test_quantity check (quantity < 100)");
+        try {
+            // WHEN: 登録できない注文と登録できる注文を受け付ける
+            journaledOrderService.accept(List.of(new Order(null, productId, "ジャーナル登録失敗", 1000, 500, 500_000)));
+            journaledOrderService.accept(List.of(new Order(null, productId, "ジャーナル登録失敗", 1000, 2, 2000)));
+
+            // THEN: 登録できる注文は登録され、登録できない注文は dead-letter になる
+            awaitOrders(1);
+            assertThat(orderRepository.findByProductId(productId)).extracting(Order::getQuantity).containsExactly(2);
+            assertThat(journaledOrderService.deadLetters()).extracting(Order::getQuantity).contains(500);
+        } finally {
+            jdbcTemplate.execute("alter table orders drop constraint ck_orders_test_quantity");
+        }
+
+        // 外した注文の引き当ては戻り、在庫の残り全部を注文できること
+        assertThat(productRepository.findById(productId).orElseThrow().getStock()).isEqualTo(998);
+        journaledOrderService.accept(List.of(new Order(null, productId, "ジャーナル登録失敗", 1000, 998, 998_000)));
+        awaitOrders(2);
+    }
+}
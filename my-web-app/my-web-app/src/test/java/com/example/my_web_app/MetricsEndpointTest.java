@@ -0,0 +1,79 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.my_web_app.metrics.QueryCountingDataSource;
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.ProductRepository;
+
+// 💡 注文のメトリクスとリクエストごとのSQLの数が /actuator/prometheus で公開されることを確認する
+// テストではメトリクスの出力が無効になるため @AutoConfigureObservability で有効にする
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@Transactional // テスト後のDB変更をロールバック
+@ActiveProfiles("test")
+public class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void prometheus_在庫不足の注文とJdbcTemplateで実行したSQLの数が公開されること() throws Exception {
+        // GIVEN: 在庫1の商品に、在庫を引き当てられる注文と在庫不足の注文を送る
+        Product product = productRepository.saveAndFlush(new Product("メトリクス確認商品", 1000, 1, null));
+        String requestJson = "{\"productId\": " + product.getId() + ", \"quantity\": 1}";
+        mockMvc.perform(post("/api/orders").contentType("application/json").content(requestJson))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/api/orders").contentType("application/json").content(requestJson))
+                .andExpect(status().isBadRequest());
+
+        // WHEN
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // THEN: 断った理由ごとの数と在庫の競合の数が出ている
+        assertThat(scrape).containsPattern("orders_rejected_total\\{[^}]*reason=\"insufficient_stock\"[^}]*\\} [1-9]");
+        assertThat(scrape).contains("orders_stock_conflicts_total");
+        assertThat(scrape).contains("orders_accepted_total");
+
+        // 注文のリクエストで実行したSQLが数えられている
+        Matcher sum = Pattern.compile(
+            "db_queries_per_request_sum\\{[^}]*method=\"POST\"[^}]*uri=\"/api/orders\"[^}]*\\} ([0-9.E]+)").matcher(scrape);
+        assertThat(sum.find()).as("POST /api/orders の db_queries_per_request_sum").isTrue();
+        assertThat(Double.parseDouble(sum.group(1))).isGreaterThan(0);
+    }
+
+    @Test
+    void QueryCountingDataSource_JdbcTemplateで実行したSQLも数えること() {
+        QueryCountingDataSource.reset();
+
+        jdbcTemplate.queryForObject("select count(*) from product", Integer.class);
+        jdbcTemplate.update("update product set price = price where id = -1");
+
+        assertThat(QueryCountingDataSource.current()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.my_web_app.model.Order;
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.OrderRepository;
+import com.example.my_web_app.repository.ProductRepository;
+import com.example.my_web_app.service.OrderService;
+import com.example.my_web_app.service.ShardedStockService;
+
+// 💡 複数スレッドから同じ商品に同時注文しても、在庫以上に売れない（売り越さない）ことを確認する
+// 各スレッドの注文をコミットさせる必要があるため @Transactional は付けない
+@SpringBootTest
+@ActiveProfiles("test")
+public class OrderConcurrencyTest {
+
+    private static final int INITIAL_STOCK = 500;
+    private static final int ORDER_COUNT = 2_000;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ShardedStockService shardedStockService;
+
+    private Long productId;
+
+    @AfterEach
+    void cleanup() {
+        if (productId != null) {
+            orderRepository.deleteAllInBatch(orderRepository.findByProductId(productId));
+            shardedStockService.reshard(productId, 0);
+            productRepository.deleteById(productId);
+        }
+    }
+
+    @Test
+    void orderProduct_同一商品への同時注文で在庫を超えて売れないこと() throws Exception {
+        // GIVEN: 在庫500個の人気商品
+        Product hotProduct = productRepository.save(new Product("同時注文テスト商品", 1000, INITIAL_STOCK, null));
+        productId = hotProduct.getId();
+
+        // WHEN: 32スレッドから1個ずつ合計2000件の注文を同時に送る
+        orderConcurrently(INITIAL_STOCK);
+
+        // 在庫は0で止まり、マイナスにならないこと
+        assertThat(productRepository.findById(productId).orElseThrow().getStock()).isEqualTo(0);
+        // 保存された注文数も在庫数と一致すること
+        assertThat(orderRepository.findByProductId(productId)).hasSize(INITIAL_STOCK);
+    }
+
+    @Test
+    void orderProduct_在庫を分割した商品でも在庫を超えて売れないこと() throws Exception {
+        // GIVEN: 在庫500個を8スロットに分割した人気商品
+        Product hotProduct = productRepository.save(new Product("分割在庫テスト商品", 1000, INITIAL_STOCK, null));
+        productId = hotProduct.getId();
+        shardedStockService.reshard(productId, 8);
+        assertThat(productRepository.findById(productId).orElseThrow().getStock()).isEqualTo(INITIAL_STOCK);
+
+        // WHEN: 同時に注文する（スロットが空になった注文は他のスロットから引き当てる）
+        orderConcurrently(INITIAL_STOCK);
+
+        // THEN: 合計の在庫は0で止まり、分割をやめると商品の在庫に戻ること
+        assertThat(productRepository.findById(productId).orElseThrow().getStock()).isEqualTo(0);
+        assertThat(orderRepository.findByProductId(productId)).hasSize(INITIAL_STOCK);
+        Product unsharded = shardedStockService.reshard(productId, 0);
+        assertThat(unsharded.getStockSlots()).isEqualTo(0);
+        assertThat(unsharded.getStock()).isEqualTo(0);
+    }
+
+    // 32スレッドから1個ずつ合計2000件の注文を同時に送り、ちょうど在庫数だけ成功することを確認する
+    private void orderConcurrently(int stock) throws Exception {
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            futures.add(executor.submit(() -> {
+                try {
+                    orderService.orderProduct(new Order(null, productId, "同時注文テスト商品", 1000, 1, 1000));
+                    succeeded.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    rejected.incrementAndGet(); // 在庫不足
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(); // 想定外の例外があればここでテストが失敗する
+        }
+        executor.shutdown();
+
+        // THEN: ちょうど在庫数だけ注文が成功し、残りは在庫不足で断られること
+        assertThat(succeeded.get()).isEqualTo(stock);
+        assertThat(rejected.get()).isEqualTo(ORDER_COUNT - stock);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.my_web_app;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.OrderRepository;
+import com.example.my_web_app.repository.ProductRepository;
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.junit.jupiter.api.Test;
+import java.util.UUID;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional // テスト後のDB変更をロールバック
+@ActiveProfiles("test")
+public class OrderIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Test
+    void orderProducts_まとめ注文で全明細の在庫が減り注文が登録されること() throws Exception {
+        // GIVEN: 2つの商品
+        Product keyboard = productRepository.save(new Product("キーボード", 5000, 10, null));
+        Product mouse = productRepository.save(new Product("マウス", 2000, 5, null));
+
+        String requestJson = "["
+            + "{\"productId\": " + keyboard.getId() + ", \"productName\": \"キーボード\", \"unitPrice\": 5000, \"quantity\": 3, \"total\": 15000},"
+            + "{\"productId\": " + mouse.getId() + ", \"productName\": \"マウス\", \"unitPrice\": 2000, \"quantity\": 2, \"total\": 4000},"
+            + "{\"productId\": " + keyboard.getId() + ", \"productName\": \"キーボード\", \"unitPrice\": 5000, \"quantity\": 1, \"total\": 5000}"
+            + "]";
+
+        // WHEN
+        mockMvc.perform(post("/api/orders/batch")
+                .contentType("application/json")
+                .content(requestJson))
+
+        // THEN: 3明細すべてが採番されて返ること
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").isNumber())
+                .andExpect(jsonPath("$[2].id").isNumber());
+
+        // 同じ商品の明細は合計数量で在庫が減ること
+        assertThat(productRepository.findById(keyboard.getId()).orElseThrow().getStock()).isEqualTo(6);
+        assertThat(productRepository.findById(mouse.getId()).orElseThrow().getStock()).isEqualTo(3);
+        assertThat(orderRepository.findByProductId(keyboard.getId())).hasSize(2);
+    }
+
+    @Test
+    void orderProducts_1明細でも在庫不足なら全体が登録されないこと() throws Exception {
+        // GIVEN: 在庫が十分な商品と、在庫が1個しかない商品
+        Product enough = productRepository.save(new Product("在庫十分", 1000, 10, null));
+        Product scarce = productRepository.save(new Product("残りわずか", 1000, 1, null));
+
+        String requestJson = "["
+            + "{\"productId\": " + enough.getId() + ", \"quantity\": 2},"
+            + "{\"productId\": " + scarce.getId() + ", \"quantity\": 2}"
+            + "]";
+
+        // WHEN & THEN: 400 Bad Request
+        mockMvc.perform(post("/api/orders/batch")
+                .contentType("application/json")
+                .content(requestJson))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("在庫が不足しています。（商品ID: " + scarce.getId() + "）"));
+
+        // 在庫が十分な商品の在庫も減っていないこと
+        assertThat(productRepository.findById(enough.getId()).orElseThrow().getStock()).isEqualTo(10);
+        assertThat(orderRepository.findByProductId(enough.getId())).isEmpty();
+    }
+
+    @Test
+    void orderProduct_同じIdempotencyKeyの再送では注文が1件だけ登録され同じ結果が返ること() throws Exception {
+        // GIVEN
+        Product product = productRepository.save(new Product("再送テスト商品", 1000, 10, null));
+        String key = UUID.randomUUID().toString();
+        String requestJson = "{\"productId\": " + product.getId() + ", \"quantity\": 2}";
+
+        String first = mockMvc.perform(post("/api/orders")
+                .header("Idempotency-Key", key)
+                .contentType("application/json")
+                .content(requestJson))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        // WHEN: 同じキーで再送（タイムアウト後のリトライを想定）
+        String second = mockMvc.perform(post("/api/orders")
+                .header("Idempotency-Key", key)
+                .contentType("application/json")
+                .content(requestJson))
+
+        // THEN: 最初と同じ結果が返り、在庫は1回分だけ減ること
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(second).isEqualTo(first);
+        assertThat(orderRepository.findByProductId(product.getId())).hasSize(1);
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(8);
+    }
+
+    @Test
+    void orderProduct_同じIdempotencyKeyで内容が異なる場合は422が返ること() throws Exception {
+        // GIVEN
+        Product product = productRepository.save(new Product("キー使い回し商品", 1000, 10, null));
+        String key = UUID.randomUUID().toString();
+        mockMvc.perform(post("/api/orders")
+                .header("Idempotency-Key", key)
+                .contentType("application/json")
+                .content("{\"productId\": " + product.getId() + ", \"quantity\": 1}"))
+                .andExpect(status().isCreated());
+
+        // WHEN & THEN: 数量を変えて同じキーで送ると 422
+        mockMvc.perform(post("/api/orders")
+                .header("Idempotency-Key", key)
+                .contentType("application/json")
+                .content("{\"productId\": " + product.getId() + ", \"quantity\": 5}"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.message").exists());
+
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(9);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.my_web_app.model.Order;
+import com.example.my_web_app.service.OrderJournal;
+
+public class OrderJournalTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private static final Instant ORDERED_AT = Instant.parse("2024-06-01T10:15:30.123Z");
+
+    private static Order order(long productId, String name, int quantity) {
+        Order order = new Order(null, productId, name, 1000, quantity, 1000 * quantity);
+        order.setOrderedAt(ORDERED_AT);
+        return order;
+    }
+
+    @Test
+    void append_書き出し済みの注文が再起動後に復元されること() throws Exception {
+        // GIVEN: 3件の注文を記録して閉じる
+        try (OrderJournal journal = new OrderJournal(dir, SEGMENT_SIZE, 0)) {
+            journal.append(order(1L, "キーボード", 2));
+            journal.append(order(2L, null, 1));
+            long last = journal.append(order(1L, "キーボード", 5));
+            journal.awaitDurable(last, 5, TimeUnit.SECONDS);
+        }
+
+        // WHEN: 開き直す
+        try (OrderJournal journal = new OrderJournal(dir, SEGMENT_SIZE, 0)) {
+            List<OrderJournal.Entry> entries = journal.replay();
+
+            // THEN: 連番の順に内容がそのまま復元されること
+            assertThat(entries).extracting(OrderJournal.Entry::seq).containsExactly(1L, 2L, 3L);
+            assertThat(entries.get(0).order().getProductName()).isEqualTo("キーボード");
+            assertThat(entries.get(1).order().getProductName()).isNull();
+            assertThat(entries.get(2).order().getQuantity()).isEqualTo(5);
+            assertThat(entries.get(2).order().getTotal()).isEqualTo(5000);
+            assertThat(entries.get(2).order().getOrderedAt()).isEqualTo(ORDERED_AT);
+
+            // 連番は続きから振られること
+            assertThat(journal.append(order(3L, "マウス", 1))).isEqualTo(4L);
+        }
+    }
+
+    @Test
+    void replay_書き込み途中で壊れたレコード以降は読み捨てること() throws Exception {
+        // GIVEN: 2件記録した後、2件目の本体が壊れた（書き込み途中で落ちた）状態
+        try (OrderJournal journal = new OrderJournal(dir, SEGMENT_SIZE, 0)) {
+            journal.append(order(1L, "キーボード", 1));
+            journal.append(order(2L, "マウス", 1));
+        }
+        Path file;
+        try (Stream<Path> files = Files.list(dir)) {
+            file = files.findFirst().orElseThrow();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            int firstLength = raf.readInt();
+            long secondPayload = 8 + firstLength + 8;
+            raf.seek(secondPayload + 28);
+            raf.writeInt(0x7fffffff);
+        }
+
+        // WHEN & THEN: 1件目だけが復元されること
+        try (OrderJournal journal = new OrderJournal(dir, SEGMENT_SIZE, 0)) {
+            assertThat(journal.replay()).extracting(OrderJournal.Entry::seq).containsExactly(1L);
+        }
+    }
+
+    @Test
+    void release_DBに登録済みの注文だけのファイルが削除されること() throws Exception {
+        // GIVEN: ファイルの切り替えが起きるだけの注文を記録する
+        try (OrderJournal journal = new OrderJournal(dir, SEGMENT_SIZE, 100)) {
+            long last = 0;
+            for (int i = 0; i < 5_000; i++) {
+                last = journal.append(order(1L, "キーボード", 1));
+            }
+            journal.awaitDurable(last, 5, TimeUnit.SECONDS);
+            long segments;
+            try (Stream<Path> files = Files.list(dir)) {
+                segments = files.count();
+            }
+            assertThat(segments).isGreaterThan(1);
+
+            // WHEN: すべての注文がDBに登録された
+            journal.release(last + 1);
+
+            // THEN: 書き込み中のファイルだけが残ること
+            try (Stream<Path> files = Files.list(dir)) {
+                assertThat(files.count()).isEqualTo(1);
+            }
+            // 連番はDBに登録済みの値の続きから振られていること
+            assertThat(last).isEqualTo(5_100L);
+        }
+    }
+}
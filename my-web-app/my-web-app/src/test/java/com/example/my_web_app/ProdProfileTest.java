@@ -0,0 +1,48 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+// 💡 prod プロファイルで起動できること（db/schema.sql とエンティティの定義が合っていること）を確認する
+// DBは target 配下のファイルに作る（2回目以降の実行では既存のDBに対して schema.sql が実行される）
+@SpringBootTest(properties = "app.db.path=./target/prod-profile-test/db")
+@ActiveProfiles("prod")
+public class ProdProfileTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void 接続プールは固定サイズで作られること() throws Exception {
+        // DataSource はSQLを数えるラッパー（QueryCountingDataSource）で包まれている
+        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+
+        assertThat(hikari.getPoolName()).isEqualTo("catalog-pool");
+        assertThat(hikari.getMinimumIdle()).isEqualTo(hikari.getMaximumPoolSize());
+        assertThat(hikari.getConnectionTimeout()).isEqualTo(2000);
+    }
+
+    @Test
+    void H2のキャッシュ設定がURLから反映されること() {
+        assertThat(setting("CACHE_SIZE")).isEqualTo("131072");
+        assertThat(setting("QUERY_CACHE_SIZE")).isEqualTo("64");
+        assertThat(setting("MV_STORE")).isEqualTo("true");
+    }
+
+    private String setting(String name) {
+        return jdbcTemplate.queryForObject(
+            "select setting_value from information_schema.settings where setting_name = ?", String.class, name);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.my_web_app.config.CacheConfig;
+import com.example.my_web_app.model.Order;
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductView;
+import com.example.my_web_app.repository.OrderRepository;
+import com.example.my_web_app.repository.ProductRepository;
+import com.example.my_web_app.repository.ProductSortKey;
+import com.example.my_web_app.service.OrderService;
+import com.example.my_web_app.service.ProductCacheWarmer;
+import com.example.my_web_app.service.ProductService;
+
+// 💡 キャッシュの破棄はコミット後に行われるため、@Transactional は付けない
+@SpringBootTest
+@ActiveProfiles("test")
+public class ProductCacheTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ProductCacheWarmer productCacheWarmer;
+
+    private Long productId;
+
+    @AfterEach
+    void cleanup() {
+        if (productId != null) {
+            orderRepository.deleteAllInBatch(orderRepository.findByProductId(productId));
+            productRepository.deleteById(productId);
+        }
+    }
+
+    @Test
+    void findProductsById_2回目はキャッシュから返り注文で破棄されること() {
+        // GIVEN
+        productId = productRepository.save(new Product("キャッシュテスト商品", 1000, 10, null)).getId();
+
+        // WHEN: 2回取得する
+        Product first = productService.findProductsById(productId).orElseThrow();
+        Product second = productService.findProductsById(productId).orElseThrow();
+
+        // THEN: 2回目はキャッシュ（同じインスタンス）が返る
+        assertThat(second).isSameAs(first);
+        assertThat(cacheManager.getCache(CacheConfig.PRODUCT_CACHE).get(productId)).isNotNull();
+
+        // WHEN: 注文で在庫が減る
+        orderService.orderProduct(new Order(null, productId, "キャッシュテスト商品", 1000, 3, 3000));
+
+        // THEN: キャッシュが破棄され、最新の在庫が返る
+        assertThat(cacheManager.getCache(CacheConfig.PRODUCT_CACHE).get(productId)).isNull();
+        assertThat(productService.findProductsById(productId).orElseThrow().getStock()).isEqualTo(7);
+    }
+
+    @Test
+    void findPage_商品の追加で一覧のキャッシュが破棄されること() {
+        // GIVEN: 一覧をキャッシュに載せる
+        productId = productRepository.save(new Product("一覧キャッシュテスト商品", 1000, 10, null)).getId();
+        productService.findPage(null, 10, ProductSortKey.ID, true);
+        assertThat(cacheManager.getCache(CacheConfig.PRODUCT_QUERY_CACHE).get("page:null:10:ID:true")).isNotNull();
+
+        // WHEN: 商品を追加
+        Product added = productService.addProduct(new Product("追加商品", 500, 1, null));
+
+        // THEN: 一覧のキャッシュは全て破棄され、次の取得で追加した商品が見える
+        assertThat(cacheManager.getCache(CacheConfig.PRODUCT_QUERY_CACHE).get("page:null:10:ID:true")).isNull();
+        assertThat(productService.findPage(null, 10, ProductSortKey.ID, true))
+            .extracting(ProductView::id).contains(added.getId());
+        productRepository.deleteById(added.getId());
+    }
+
+    @Test
+    void warmUp_売れ筋の商品がキャッシュに読み込まれること() {
+        // GIVEN: 注文のある商品（注文でキャッシュは破棄される）
+        productId = productRepository.save(new Product("読み込みテスト商品", 1000, 10, null)).getId();
+        orderService.orderProduct(new Order(null, productId, "読み込みテスト商品", 1000, 3, 3000));
+        assertThat(cacheManager.getCache(CacheConfig.PRODUCT_CACHE).get(productId)).isNull();
+
+        // WHEN
+        productCacheWarmer.warmUp();
+
+        // THEN: DBを読まずに最新の在庫が返る
+        Product cached = cacheManager.getCache(CacheConfig.PRODUCT_CACHE).get(productId, Product.class);
+        assertThat(cached).isNotNull();
+        assertThat(cached.getStock()).isEqualTo(7);
+        assertThat(productService.findProductsById(productId).orElseThrow()).isSameAs(cached);
+    }
+}
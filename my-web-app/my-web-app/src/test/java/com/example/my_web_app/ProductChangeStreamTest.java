@@ -0,0 +1,133 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.my_web_app.model.Order;
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.OrderRepository;
+import com.example.my_web_app.repository.ProductRepository;
+import com.example.my_web_app.service.OrderService;
+import com.example.my_web_app.service.ProductService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// 💡 変更はコミット後に配信されるため @Transactional は付けず、実際のサーバーにSSEで接続する
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class ProductChangeStreamTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Long productId;
+
+    @AfterEach
+    void cleanup() {
+        if (productId != null) {
+            orderRepository.deleteAllInBatch(orderRepository.findByProductId(productId));
+            productRepository.deleteById(productId);
+        }
+    }
+
+    @Test
+    void streamChanges_注文による在庫の変更と商品の削除が届くこと() throws Exception {
+        // GIVEN: 商品と、変更の購読
+        productId = productService.addProduct(new Product("配信テスト商品", 1000, 10, null)).getId();
+        HttpResponse<Stream<String>> response = HttpClient.newHttpClient().send(
+            HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/products/stream")).build(),
+            HttpResponse.BodyHandlers.ofLines());
+        assertThat(response.statusCode()).isEqualTo(200);
+
+        BlockingQueue<JsonNode> events = new LinkedBlockingQueue<>();
+        Thread.ofVirtual().start(() -> response.body()
+            .filter(line -> line.startsWith("data:"))
+            .forEach(line -> {
+                try {
+                    events.add(objectMapper.readTree(line.substring("data:".length())));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+
+        try {
+            // WHEN: 続けて3回注文する
+            for (int i = 0; i < 3; i++) {
+                orderService.orderProduct(new Order(null, productId, "配信テスト商品", 1000, 1, 1000));
+            }
+
+            // THEN: 最新の在庫（7個）が届くこと
+            awaitChanges(events, changes -> hasStock(changes.get("products"), productId, 7));
+
+            // WHEN: 商品を削除する
+            orderRepository.deleteAllInBatch(orderRepository.findByProductId(productId));
+            productService.deleteProduct(productId);
+            Long deletedId = productId;
+            productId = null;
+
+            // THEN: 削除された商品のIDが届くこと
+            awaitChanges(events, changes -> {
+                for (JsonNode id : changes.get("deleted")) {
+                    if (id.asLong() == deletedId) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+        } finally {
+            response.body().close();
+        }
+    }
+
+    // 条件に合う "changes" イベントが届くまで待つ（5秒まで）
+    private static void awaitChanges(BlockingQueue<JsonNode> events, Predicate<JsonNode> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            JsonNode changes = events.poll(100, TimeUnit.MILLISECONDS);
+            if (changes != null && condition.test(changes)) {
+                return;
+            }
+        }
+        fail("期待した変更が届きませんでした");
+    }
+
+    private static boolean hasStock(JsonNode products, Long id, int stock) {
+        for (JsonNode product : products) {
+            if (product.get("id").asLong() == id && product.get("stock").asInt() == stock) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
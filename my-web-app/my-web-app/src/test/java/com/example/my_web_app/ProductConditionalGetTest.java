@@ -0,0 +1,95 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.my_web_app.model.Order;
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.OrderRepository;
+import com.example.my_web_app.repository.ProductRepository;
+import com.example.my_web_app.service.OrderService;
+import com.example.my_web_app.service.ProductService;
+
+// 💡 ETag の更新はコミット後に行われるため、@Transactional は付けない
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ProductConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private Long productId;
+
+    @AfterEach
+    void cleanup() {
+        if (productId != null) {
+            orderRepository.deleteAllInBatch(orderRepository.findByProductId(productId));
+            productRepository.deleteById(productId);
+        }
+    }
+
+    @Test
+    void getProductsById_ETagが一致すれば304が返り注文後は200に戻ること() throws Exception {
+        // GIVEN
+        productId = productService.addProduct(new Product("条件付きGET商品", 1000, 10, null)).getId();
+        String etag = mockMvc.perform(get("/api/products/" + productId))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+
+        // WHEN & THEN: 変更がなければ 304（本文なし）
+        mockMvc.perform(get("/api/products/" + productId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // WHEN: 注文で在庫が減る
+        orderService.orderProduct(new Order(null, productId, "条件付きGET商品", 1000, 3, 3000));
+
+        // THEN: 古い ETag では 200 と新しい ETag が返る
+        String newEtag = mockMvc.perform(get("/api/products/" + productId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(newEtag).isNotEqualTo(etag);
+    }
+
+    @Test
+    void getProducts_一覧のETagは商品の追加で変わること() throws Exception {
+        // GIVEN
+        String etag = mockMvc.perform(get("/api/products").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/api/products").param("limit", "10").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // WHEN: 商品を追加
+        productId = productService.addProduct(new Product("条件付きGET一覧商品", 500, 1, null)).getId();
+
+        // THEN: 同じ ETag では 304 にならない
+        mockMvc.perform(get("/api/products").param("limit", "10").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+}
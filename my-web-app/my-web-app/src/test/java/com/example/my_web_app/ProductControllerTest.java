@@ -7,16 +7,33 @@ import org.springframework.http.MediaType;
 
 import com.example.my_web_app.controller.ProductController;
 import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductView;
+import com.example.my_web_app.service.CatalogChangeTracker;
+import com.example.my_web_app.service.ProductChangeStream;
+import com.example.my_web_app.service.ProductImportService;
 import com.example.my_web_app.service.ProductService;
+import com.example.my_web_app.service.ShardedStockService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.any;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -26,6 +43,16 @@ public class ProductControllerTest {
     @Autowired private MockMvc mockMvc;
     // 💡 Service層をモック化
     @MockBean private ProductService productService;
+    @MockBean private ProductImportService productImportService;
+    @MockBean private CatalogChangeTracker catalogChangeTracker;
+    @MockBean private ShardedStockService shardedStockService;
+    @MockBean private ProductChangeStream productChangeStream;
+
+    @BeforeEach
+    void setUp() {
+        given(catalogChangeTracker.etag()).willReturn("W/\"c-1\"");
+        given(catalogChangeTracker.lastModified()).willReturn(Instant.now());
+    }
 
     @Test
     void createProduct_正常なリクエストで201が返されること() throws Exception {
@@ -46,4 +73,53 @@ public class ProductControllerTest {
         // 💡 動作の検証 (ControllerがServiceを正しく呼び出したか)
         verify(productService, times(1)).addProduct(any(Product.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getProducts_fieldsで指定した項目だけが返されること() throws Exception {
+        // GIVEN
+        ProductView product = new ProductView(1L, "テストPC", 100000, 10, "とても長い説明文", null, 0, Instant.now());
+        given(productService.findAll()).willReturn(List.of(product));
+
+        // WHEN & THEN: 指定していない description などは含まれない
+        mockMvc.perform(get("/api/products").param("fields", "id,name,price"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].name").value("テストPC"))
+                .andExpect(jsonPath("$[0].price").value(100000))
+                .andExpect(jsonPath("$[0].description").doesNotExist())
+                .andExpect(jsonPath("$[0].stock").doesNotExist());
+
+        // 存在しない項目は 400
+        mockMvc.perform(get("/api/products").param("fields", "id,password"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("fields に指定できない項目です: password"));
+    }
+
+    @Test
+    void getProducts_AcceptがCBORの場合はCBORで返されること() throws Exception {
+        // GIVEN
+        ProductView product = new ProductView(1L, "テストPC", 100000, 10, null, null, 0, Instant.now());
+        given(productService.findAll()).willReturn(List.of(product));
+
+        // WHEN
+        byte[] body = mockMvc.perform(get("/api/products").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andExpect(header().stringValues("Vary", hasItem("Accept")))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // THEN: CBORとして読める
+        JsonNode products = new ObjectMapper(new CBORFactory()).readTree(body);
+        assertThat(products.get(0).get("name").asText()).isEqualTo("テストPC");
+    }
+
+    @Test
+    void getProducts_304の場合もVaryにAcceptが含まれること() throws Exception {
+        // WHEN & THEN: 一覧が変わっていなければDBを読まずに 304（キャッシュが JSON / CBOR を取り違えないよう Vary は付ける）
+        mockMvc.perform(get("/api/products").accept("application/cbor").header("If-None-Match", "W/\"c-1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().stringValues("Vary", hasItem("Accept")));
+
+        verify(productService, never()).findAll();
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.ProductRepository;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional // テスト後のDB変更をロールバック
+@ActiveProfiles("test")
+public class ProductImportIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void importProducts_CSVの正しい行だけが登録され不正な行は行番号付きで返ること() throws Exception {
+        // GIVEN: 引用符で囲んだカンマ・改行を含む行、価格が不正な行、価格がマイナスの行
+        String csv = "\uFEFFname,price,stock,description\r\n"
+            + "インポートPC,120000,5,\"高性能, 軽量\"\r\n"
+            + "インポートマウス,abc,3,\r\n"
+            + "インポートモニター,30000,2,\"1行目\n2行目\"\r\n"
+            + "インポートケーブル,-100,1,\r\n";
+
+        // WHEN & THEN
+        mockMvc.perform(post("/api/products/import")
+                .contentType("text/csv; charset=UTF-8")
+                .content(csv.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(3))
+                .andExpect(jsonPath("$.errors[0].message").value("価格は整数で指定してください: abc"))
+                .andExpect(jsonPath("$.errors[1].line").value(6))
+                .andExpect(jsonPath("$.errors[1].message").value("価格は0以上にする必要があります。"));
+
+        List<Product> monitors = productRepository.findByName("インポートモニター");
+        assertThat(monitors).hasSize(1);
+        assertThat(monitors.get(0).getDescription()).isEqualTo("1行目\n2行目");
+        assertThat(productRepository.findByName("インポートPC").get(0).getDescription()).isEqualTo("高性能, 軽量");
+    }
+
+    @Test
+    void importProducts_NDJSONとShift_JISのCSVを登録できること() throws Exception {
+        // GIVEN: エクスポートの出力（id などの項目を含む）と壊れた行
+        String ndjson = "{\"id\": 999, \"name\": \"NDJSON商品\", \"price\": 500, \"stock\": 7, \"imageUrl\": null}\n"
+            + "{\"name\": \"壊れた行\", \"price\": \n"
+            + "{\"name\": \"NDJSON商品2\", \"price\": -1}\n";
+
+        // WHEN & THEN
+        mockMvc.perform(post("/api/products/import")
+                .contentType("application/x-ndjson")
+                .content(ndjson.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(2))
+                .andExpect(jsonPath("$.errors[1].line").value(3));
+
+        Product product = productRepository.findByName("NDJSON商品").get(0);
+        assertThat(product.getId()).isNotEqualTo(999L); // IDはシーケンスで採番される
+        assertThat(product.getStock()).isEqualTo(7);
+
+        // Shift_JIS のCSV（Excelで保存したファイルなど）
+        Charset shiftJis = Charset.forName("Shift_JIS");
+        mockMvc.perform(post("/api/products/import")
+                .contentType("text/csv; charset=Shift_JIS")
+                .content("name,price\nシフトJIS商品,800\n".getBytes(shiftJis)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1));
+        assertThat(productRepository.findByName("シフトJIS商品")).hasSize(1);
+    }
+
+    @Test
+    void importProducts_商品名や説明文が長すぎる行は行番号付きで返り他の行は登録されること() throws Exception {
+        // GIVEN: 列の長さ（255文字）を超える商品名・説明文の行
+        String csv = "name,price,description\n"
+            + "長さ確認商品,100,\n"
+            + "あ".repeat(256) + ",100,\n"
+            + "長さ確認商品2,100," + "い".repeat(256) + "\n";
+
+        // WHEN & THEN
+        mockMvc.perform(post("/api/products/import")
+                .contentType("text/csv; charset=UTF-8")
+                .content(csv.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(3))
+                .andExpect(jsonPath("$.errors[0].message").value("商品名は255文字以内で指定してください。"))
+                .andExpect(jsonPath("$.errors[1].line").value(4))
+                .andExpect(jsonPath("$.errors[1].message").value("説明文は255文字以内で指定してください。"));
+
+        assertThat(productRepository.findByName("長さ確認商品")).hasSize(1);
+    }
+
+    @Test
+    void importProducts_NDJSONのnullやオブジェクト以外の行は行番号付きで返ること() throws Exception {
+        // GIVEN: null・配列・数値の行の間に正しい行
+        String ndjson = "null\n"
+            + "{\"name\": \"NDJSON正常商品\", \"price\": 300}\n"
+            + "[1, 2]\n"
+            + "42\n";
+
+        // WHEN & THEN: 500 にならず、不正な行として返ること
+        mockMvc.perform(post("/api/products/import")
+                .contentType("application/x-ndjson")
+                .content(ndjson.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(3))
+                .andExpect(jsonPath("$.errors[0].line").value(1))
+                .andExpect(jsonPath("$.errors[0].message").value("JSONの形式が不正です。"))
+                .andExpect(jsonPath("$.errors[1].line").value(3))
+                .andExpect(jsonPath("$.errors[2].line").value(4));
+
+        assertThat(productRepository.findByName("NDJSON正常商品")).hasSize(1);
+    }
+
+    @Test
+    void importProducts_ヘッダーに必要な列がない場合は400が返ること() throws Exception {
+        mockMvc.perform(post("/api/products/import")
+                .contentType("text/csv")
+                .content("title,cost\nA,1\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("CSVのヘッダー行に name と price の列が必要です。"));
+    }
+}
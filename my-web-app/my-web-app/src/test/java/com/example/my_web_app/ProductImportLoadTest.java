@@ -0,0 +1,86 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.my_web_app.repository.ProductRepository;
+
+/**
+ * 負荷テスト: 商品の一括登録 (POST /api/products/import) のスループット（目標: 10万件/分）
+ * 通常の mvn test では実行されない。実行方法: mvn -Pperf test -Dtest=ProductImportLoadTest
+ * 件数は -Dload.importRows で変更できる。CSVは送信しながら生成し、テスト側でもメモリに載せない。
+ */
+@Tag("perf")
+public class ProductImportLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImportLoadTest.class);
+
+    private static final int ROWS = Integer.getInteger("load.importRows", 100_000);
+    private static final double TARGET_ROWS_PER_MINUTE = 100_000;
+
+    @Test
+    void 一括登録のスループットが目標を満たすこと() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MyWebAppApplication.class)
+                .profiles("test")
+                .run( // プロファイルの設定より優先させるため、コマンドライン引数として渡す
+                    "--server.port=0",
+                    "--spring.datasource.url=jdbc:h2:mem:load-import;DB_CLOSE_DELAY=-1",
+                    "--spring.jpa.show-sql=false")) {
+
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/products/import"))
+                .header("Content-Type", "text/csv; charset=UTF-8")
+                .POST(HttpRequest.BodyPublishers.ofInputStream(ProductImportLoadTest::csv))
+                .build();
+
+            long start = System.nanoTime();
+            HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            double rowsPerMinute = ROWS / elapsedSeconds * 60;
+
+            log.info(String.format("rows=%d elapsed=%.1fs throughput=%.0f rows/min", ROWS, elapsedSeconds, rowsPerMinute));
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.body()).contains("\"imported\":" + ROWS);
+            assertThat(context.getBean(ProductRepository.class).count()).isEqualTo(ROWS);
+            assertThat(rowsPerMinute).isGreaterThanOrEqualTo(TARGET_ROWS_PER_MINUTE);
+        }
+    }
+
+    // ヘッダー行と ROWS 件の商品行を1行ずつ生成する
+    private static InputStream csv() {
+        Enumeration<InputStream> lines = new Enumeration<>() {
+            private int row = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return row <= ROWS;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                String line = row == 0
+                    ? "name,price,stock,description\n"
+                    : "一括登録商品" + row + "," + (100 + row % 10_000) + ",10,\"説明, " + row + "\"\n";
+                row++;
+                return new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        return new SequenceInputStream(lines);
+    }
+}
@@ -3,11 +3,16 @@ package com.example.my_web_app;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 import com.example.my_web_app.model.Product;
 import com.example.my_web_app.repository.ProductRepository;
+import com.example.my_web_app.service.ProductPurger;
 import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -27,6 +32,12 @@ public class ProductIntegrationTest {
     @Autowired
     private ProductRepository productRepository; // 実際のDBアクセスを確認するために使用
 
+    @Autowired
+    private ProductPurger productPurger;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     void createProduct_API経由で商品が正常に作成されること() throws Exception {
         // GIVEN (前提条件): 送信するリクエストボディのJSONデータ
@@ -160,4 +171,131 @@ public class ProductIntegrationTest {
         Product finalProduct = productRepository.findById(productId).orElseThrow();
         assertThat(finalProduct.getStock()).isEqualTo(1); // 💡 在庫数が元の1のままであること
     }
-}
\ No newline at end of file
+
+    @Test
+    void patchProduct_指定した項目だけが変更されること() throws Exception {
+        // GIVEN
+        Product saved = productRepository.saveAndFlush(new Product("部分更新テスト商品", 1000, 10, "説明文"));
+
+        // WHEN: 価格だけを変更
+        mockMvc.perform(patch("/api/products/" + saved.getId())
+                .contentType("application/json")
+                .content("{\"price\": 800}"))
+
+        // THEN: 価格だけが変わり、バージョンが上がること
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.price").value(800))
+                .andExpect(jsonPath("$.stock").value(10))
+                .andExpect(jsonPath("$.description").value("説明文"));
+
+        Product patched = productRepository.findById(saved.getId()).orElseThrow();
+        assertThat(patched.getName()).isEqualTo("部分更新テスト商品");
+        assertThat(patched.getVersion()).isEqualTo(saved.getVersion() + 1);
+    }
+
+    @Test
+    void patchProducts_複数商品の価格と在庫が一括で変更されること() throws Exception {
+        // GIVEN
+        Product first = productRepository.saveAndFlush(new Product("一括更新A", 1000, 10, null));
+        Product second = productRepository.saveAndFlush(new Product("一括更新B", 2000, 20, null));
+
+        String requestJson = "["
+            + "{\"id\": " + first.getId() + ", \"price\": 900},"
+            + "{\"id\": " + second.getId() + ", \"stock\": 5}"
+            + "]";
+
+        // WHEN
+        mockMvc.perform(patch("/api/products")
+                .contentType("application/json")
+                .content(requestJson))
+
+        // THEN: 指定した項目だけが変わること
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(2));
+
+        Product patchedFirst = productRepository.findById(first.getId()).orElseThrow();
+        Product patchedSecond = productRepository.findById(second.getId()).orElseThrow();
+        assertThat(patchedFirst.getPrice()).isEqualTo(900);
+        assertThat(patchedFirst.getStock()).isEqualTo(10);
+        assertThat(patchedSecond.getPrice()).isEqualTo(2000);
+        assertThat(patchedSecond.getStock()).isEqualTo(5);
+    }
+
+    @Test
+    void patchProducts_存在しない商品が含まれる場合_NotFoundが返されること() throws Exception {
+        // GIVEN
+        Product saved = productRepository.saveAndFlush(new Product("一括更新C", 1000, 10, null));
+
+        String requestJson = "["
+            + "{\"id\": " + saved.getId() + ", \"price\": 900},"
+            + "{\"id\": 999999, \"price\": 900}"
+            + "]";
+
+        // WHEN & THEN: 404 Not Found
+        mockMvc.perform(patch("/api/products")
+                .contentType("application/json")
+                .content(requestJson))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("商品ID: 999999 が見つかりません。"));
+    }
+
+    @Test
+    void patchProducts_長すぎる商品名や説明文は商品ID付きの400が返り何も変更されないこと() throws Exception {
+        // GIVEN: 列の長さ（255文字）を超える説明文を含む一括更新
+        Product first = productRepository.saveAndFlush(new Product("一括更新D", 1000, 10, null));
+        Product second = productRepository.saveAndFlush(new Product("一括更新E", 2000, 20, null));
+
+        String requestJson = "["
+            + "{\"id\": " + first.getId() + ", \"price\": 900},"
+            + "{\"id\": " + second.getId() + ", \"description\": \"" + "あ".repeat(256) + "\"}"
+            + "]";
+
+        // WHEN & THEN: 400 Bad Request（どの商品か分かるメッセージ）
+        mockMvc.perform(patch("/api/products")
+                .contentType("application/json")
+                .content(requestJson))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("説明文は255文字以内で指定してください。（商品ID: " + second.getId() + "）"));
+
+        // 1商品の PATCH でも同じ
+        mockMvc.perform(patch("/api/products/" + first.getId())
+                .contentType("application/json")
+                .content("{\"name\": \"" + "い".repeat(256) + "\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("商品名は255文字以内で指定してください。（商品ID: " + first.getId() + "）"));
+
+        assertThat(productRepository.findById(first.getId()).orElseThrow().getPrice()).isEqualTo(1000);
+    }
+
+    @Test
+    void deleteProduct_削除した商品は取得も注文もできず_後片付けで行が消えること() throws Exception {
+        // GIVEN
+        Product saved = productRepository.saveAndFlush(new Product("削除テスト商品", 1000, 10, null));
+
+        // WHEN: 削除する
+        mockMvc.perform(delete("/api/products/" + saved.getId()))
+                .andExpect(status().isNoContent());
+
+        // THEN: 削除の印が付いただけで、APIからは見えないこと
+        mockMvc.perform(get("/api/products/" + saved.getId()))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/orders")
+                .contentType("application/json")
+                .content("{\"productId\": " + saved.getId() + ", \"quantity\": 1}"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/api/products/" + saved.getId()))
+                .andExpect(status().isNotFound());
+        assertThat(countRows(saved.getId())).isEqualTo(1);
+
+        // WHEN: 猶予期間が過ぎてから後片付けする
+        jdbcTemplate.update("update product set deleted_at = dateadd(hour, -1, deleted_at) where id = ?", saved.getId());
+        productPurger.purge();
+
+        // THEN: 行が削除されること
+        assertThat(countRows(saved.getId())).isZero();
+    }
+
+    private Integer countRows(Long productId) {
+        return jdbcTemplate.queryForObject("select count(*) from product where id = ?", Integer.class, productId);
+    }
+}
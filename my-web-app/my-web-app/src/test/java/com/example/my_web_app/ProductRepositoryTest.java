@@ -2,15 +2,19 @@ package com.example.my_web_app;
 
 import static org.assertj.core.api.Assertions.*;
 
+import java.time.Instant;
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
 import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductView;
 import com.example.my_web_app.repository.ProductRepository;
+import com.example.my_web_app.repository.ProductSortKey;
 
 @DataJpaTest
 @ActiveProfiles("test") //application-test.propertiesから読み込む
@@ -19,6 +23,9 @@ public class ProductRepositoryTest {
     @Autowired
     private ProductRepository repository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     void findByNameContaining_部分一致検索が機能すること() {
         // GIVEN: データをDBに保存 (H2DB)
@@ -32,4 +39,76 @@ public class ProductRepositoryTest {
         assertThat(result).hasSize(1); // 💡 "ノートPC Pro" だけがヒットすることを期待
         assertThat(result.get(0).getName()).isEqualTo("ノートPC Pro");
     }
-}
\ No newline at end of file
+
+    @Test
+    void findPage_価格順のキーセットページングで重複なく続きが取得できること() {
+        // GIVEN: 同じ価格を含む4件の商品
+        repository.save(new Product("A", 300, 1, null));
+        Product b = repository.save(new Product("B", 100, 1, null));
+        Product c = repository.save(new Product("C", 200, 1, null));
+        repository.save(new Product("D", 200, 1, null));
+
+        // WHEN: 価格の昇順で2件ずつ取得する
+        List<ProductView> first = repository.findPage(null, 2, ProductSortKey.PRICE, false);
+        List<ProductView> second = repository.findPage(first.get(1).id(), 2, ProductSortKey.PRICE, false);
+
+        // THEN: 価格が同じ商品はID順に並び、ページをまたいで重複・欠落がないこと
+        assertThat(first).extracting(ProductView::name).containsExactly("B", "C");
+        assertThat(first.get(0).id()).isEqualTo(b.getId());
+        assertThat(first.get(1).id()).isEqualTo(c.getId());
+        assertThat(second).extracting(ProductView::name).containsExactly("D", "A");
+    }
+
+    @Test
+    void findPage_名前順で名前のない商品や削除された起点からも続きが取得できること() {
+        // GIVEN: 名前のない商品を含む4件の商品
+        Product noName = repository.save(new Product(null, 100, 1, null));
+        Product a = repository.save(new Product("A", 100, 1, null));
+        Product b = repository.save(new Product("B", 100, 1, null));
+        Product c = repository.saveAndFlush(new Product("C", 100, 1, null));
+
+        // WHEN & THEN: 名前のない商品は昇順では先頭、降順では末尾に並ぶ
+        assertThat(repository.findPage(noName.getId(), 10, ProductSortKey.NAME, false))
+            .extracting(ProductView::id).containsExactly(a.getId(), b.getId(), c.getId());
+        assertThat(repository.findPage(b.getId(), 10, ProductSortKey.NAME, true))
+            .extracting(ProductView::id).containsExactly(a.getId(), noName.getId());
+
+        // 前ページの最後の商品が削除されても、その位置から続きが取得できること
+        b.setDeletedAt(Instant.now());
+        repository.saveAndFlush(b);
+        assertThat(repository.findPage(b.getId(), 10, ProductSortKey.NAME, false))
+            .extracting(ProductView::id).containsExactly(c.getId());
+    }
+
+    @Test
+    void findPage_在庫順は分割した在庫を含む合計で並ぶこと() {
+        // GIVEN: 在庫を2つのスロットに分割した商品（分割していない残りは0、合計100）と在庫10の商品
+        Product sharded = repository.save(new Product("分割", 100, 0, null));
+        Product plain = repository.saveAndFlush(new Product("通常", 100, 10, null));
+        jdbcTemplate.update("update product set stock_slots = 2 where id = ?", sharded.getId());
+        jdbcTemplate.update("insert into product_stock_slot (product_id, slot, stock) values (?, 0, 50), (?, 1, 50)",
+            sharded.getId(), sharded.getId());
+
+        // WHEN & THEN: 在庫の降順では合計の多い分割した商品が先に並び、その位置から続きが取得できること
+        List<ProductView> first = repository.findPage(null, 1, ProductSortKey.STOCK, true);
+        assertThat(first).extracting(ProductView::id).containsExactly(sharded.getId());
+        assertThat(repository.findPage(sharded.getId(), 10, ProductSortKey.STOCK, true))
+            .extracting(ProductView::id).startsWith(plain.getId());
+    }
+
+    @Test
+    void findViewsByIdIn_エンティティと同じ値の読み取り専用の結果が返ること() {
+        // GIVEN
+        Product saved = repository.saveAndFlush(new Product("ビュー商品", 1200, 3, "説明"));
+        repository.save(new Product("対象外の商品", 100, 1, null));
+
+        // WHEN
+        List<ProductView> views = repository.findViewsByIdIn(List.of(saved.getId()));
+
+        // THEN: 指定したIDの商品だけが、エンティティと同じ値で返ること
+        // （lastModified はDBの精度に丸められるため、値があることだけを確認する）
+        assertThat(views).hasSize(1);
+        assertThat(views.get(0)).usingRecursiveComparison().ignoringFields("lastModified").isEqualTo(ProductView.of(saved));
+        assertThat(views.get(0).lastModified()).isNotNull();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.my_web_app.model.Product;
+import com.example.my_web_app.repository.ProductRepository;
+import com.example.my_web_app.service.ProductChangedEvent;
+import com.example.my_web_app.service.ProductSearchIndex;
+
+public class ProductSearchIndexTest {
+
+    private final ProductSearchIndex index = new ProductSearchIndex();
+
+    private Product product(Long id, String name, String description) {
+        Product product = new Product(name, 1000, 10, description);
+        product.setId(id);
+        return product;
+    }
+
+    @Test
+    void search_部分一致を関連度順に返すこと() {
+        // GIVEN: 名前の完全一致・前方一致・部分一致・説明文の一致
+        index.put(product(1L, "マウスパッド", null));
+        index.put(product(2L, "ワイヤレスマウス", null));
+        index.put(product(3L, "マウス", null));
+        index.put(product(4L, "キーボード", "マウスとセットで使える"));
+        index.put(product(5L, "モニター", null));
+
+        // WHEN
+        List<Long> result = index.search("マウス", 10);
+
+        // THEN: 完全一致 > 前方一致 > 部分一致 > 説明文 の順
+        assertThat(result).containsExactly(3L, 1L, 2L, 4L);
+    }
+
+    @Test
+    void search_全角半角と大文字小文字を区別しないこと() {
+        index.put(product(1L, "ノートＰＣ Pro", null));
+
+        assertThat(index.search("pc", 10)).containsExactly(1L);
+    }
+
+    @Test
+    void search_N_gramを含むが連続していない商品は返さないこと() {
+        // 「ノー」「ート」を両方含むが「ノート」は含まない
+        index.put(product(1L, "ノーマルなートバッグ", null));
+
+        assertThat(index.search("ノート", 10)).isEmpty();
+    }
+
+    @Test
+    void put_remove_更新と削除がインデックスに反映されること() {
+        index.put(product(1L, "デスクトップPC", null));
+
+        // 名前の変更
+        index.put(product(1L, "ノートPC", null));
+        assertThat(index.search("デスク", 10)).isEmpty();
+        assertThat(index.search("ノート", 10)).containsExactly(1L);
+
+        // 削除
+        index.remove(1L);
+        assertThat(index.search("ノート", 10)).isEmpty();
+    }
+
+    @Test
+    void search_limit件までに絞られること() {
+        for (long id = 1; id <= 20; id++) {
+            index.put(product(id, "ケーブル" + id, null));
+        }
+
+        assertThat(index.search("ケーブル", 5)).hasSize(5);
+    }
+
+    @Test
+    void rebuild_読み込み中に届いた更新と削除が古い行で上書きされないこと() {
+        // GIVEN: 全件読み込みで行を読んだ後、インデックスに入れる前に更新・削除がコミットされる
+        ProductRepository repository = mock(ProductRepository.class);
+        ReflectionTestUtils.setField(index, "productRepository", repository);
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(0);
+            Product staleUpdated = product(1L, "デスクトップPC", null);
+            Product staleDeleted = product(2L, "USBケーブル", null);
+            index.onProductChanged(ProductChangedEvent.updated(product(1L, "ノートPC", null)));
+            index.onProductChanged(ProductChangedEvent.deleted(2L));
+            consumer.accept(staleUpdated);
+            consumer.accept(staleDeleted);
+            return null;
+        }).when(repository).streamAll(any());
+
+        // WHEN
+        index.rebuild();
+
+        // THEN: 読み込み中の変更が最後に適用されている
+        assertThat(index.search("ノート", 10)).containsExactly(1L);
+        assertThat(index.search("デスク", 10)).isEmpty();
+        assertThat(index.search("ケーブル", 10)).isEmpty();
+    }
+}
@@ -6,8 +6,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import com.example.my_web_app.model.Product;
+import com.example.my_web_app.model.ProductView;
 import com.example.my_web_app.repository.ProductRepository;
+import com.example.my_web_app.service.ProductSearchIndex;
 import com.example.my_web_app.service.ProductService;
 
 import static org.junit.jupiter.api.Assertions.*; // アサーション（検証）メソッドをインポート
@@ -22,6 +25,12 @@ public class ProductServiceTest {
     @Mock // 💡 Repositoryはデータベース接続を含むため、モック（偽物）に置き換える
     private ProductRepository productRepository;
 
+    @Mock
+    private ProductSearchIndex productSearchIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks // 💡 テスト対象のクラス。@Mockで作成したインスタンスがここに自動注入される
     private ProductService productService;
 
@@ -119,18 +128,18 @@ public class ProductServiceTest {
         String searchName = "ノートPC";
 
         // 1. モックが返す、期待される結果リストを作成
-        Product p1 = new Product("ノートPC Pro", 150000, 10, searchName);
-        Product p2 = new Product("ノートPC Light", 98000, 10, searchName);
-        List<Product> expectedList = List.of(p1, p2);
+        ProductView p1 = ProductView.of(new Product("ノートPC Pro", 150000, 10, searchName));
+        ProductView p2 = ProductView.of(new Product("ノートPC Light", 98000, 10, searchName));
+        List<ProductView> expectedList = List.of(p1, p2);
 
         // 2. Repositoryのモックの振る舞いを設定 (スタブ)
-        // 💡 productRepository.findByName("ノートPC") が呼ばれたら、
+        // 💡 productRepository.findViewsByName("ノートPC") が呼ばれたら、
         //    上で作った expectedList を返すように設定
-        when(productRepository.findByName(searchName)).thenReturn(expectedList);
+        when(productRepository.findViewsByName(searchName)).thenReturn(expectedList);
 
         // WHEN (実行)
         // テスト対象のメソッドを実行
-        List<Product> actualList = productService.findProductsByName(searchName);
+        List<ProductView> actualList = productService.findProductsByName(searchName);
 
         // THEN (検証)
         // 1. 戻り値が期待通りのリストと一致しているか
@@ -139,10 +148,27 @@ public class ProductServiceTest {
         assertEquals(expectedList, actualList); // リストの中身が完全に一致すること
 
         // 2. サービス層が正しくリポジトリを呼び出したか検証
-        verify(productRepository, times(1)).findByName(searchName);
+        verify(productRepository, times(1)).findViewsByName(searchName);
         verifyNoMoreInteractions(productRepository); // 💡 その他のRepositoryメソッドが呼ばれていないことの確認
     }
 
+    @Test
+    void findProductsById_主キー検索のみで全件取得しないこと() {
+        // GIVEN: ID=1 の商品が存在する
+        Product product = new Product("ノートPC Pro", 150000, 10, null);
+        product.setId(1L);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        // WHEN
+        Optional<Product> result = productService.findProductsById(1L);
+
+        // THEN: 主キー検索の結果がそのまま返り、findAll は呼ばれないこと
+        assertTrue(result.isPresent());
+        assertEquals("ノートPC Pro", result.get().getName());
+        verify(productRepository, times(1)).findById(1L);
+        verify(productRepository, never()).findAll();
+    }
+
 //    @Test
 //    void buyProduct_在庫がある場合_購入成功() {
 //        // GIVEN (前提条件)
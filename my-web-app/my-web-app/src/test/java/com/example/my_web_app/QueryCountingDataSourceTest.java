@@ -0,0 +1,62 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import com.example.my_web_app.metrics.QueryCountingDataSource;
+
+public class QueryCountingDataSourceTest {
+
+    private static QueryCountingDataSource dataSource() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:query-counting-test");
+        return new QueryCountingDataSource(h2, 0);
+    }
+
+    @Test
+    void getConnection_実行したSQLの数を数えること() throws Exception {
+        // GIVEN
+        QueryCountingDataSource dataSource = dataSource();
+        QueryCountingDataSource.reset();
+
+        // WHEN: Statement と PreparedStatement（バッチ）で実行する
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("create table t (id int)");
+            }
+            try (PreparedStatement statement = connection.prepareStatement("insert into t values (?)")) {
+                statement.setInt(1, 1);
+                statement.addBatch();
+                statement.setInt(1, 2);
+                statement.addBatch();
+                statement.executeBatch();
+            }
+        }
+
+        // THEN: バッチは1回と数える
+        assertThat(QueryCountingDataSource.current()).isEqualTo(2);
+    }
+
+    @Test
+    void getConnection_包んだ接続とStatementが同一性を保つこと() throws Exception {
+        // GIVEN
+        QueryCountingDataSource dataSource = dataSource();
+
+        // WHEN
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+
+            // THEN: equals / hashCode はプロキシ自身で判定し、Statement からは包んだ接続が返ること
+            assertThat(connection).isEqualTo(connection);
+            assertThat(connection.hashCode()).isEqualTo(System.identityHashCode(connection));
+            assertThat(statement).isEqualTo(statement);
+            assertThat(statement.getConnection()).isSameAs(connection);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.my_web_app;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.my_web_app.model.Order;
+import com.example.my_web_app.service.OrderPlacedEvent;
+import com.example.my_web_app.service.SalesAggregates;
+import com.example.my_web_app.service.SalesAggregates.HourlySales;
+import com.example.my_web_app.service.SalesAggregates.ProductSales;
+import com.example.my_web_app.service.SalesAggregates.Ranking;
+
+public class SalesAggregatesTest {
+
+    private final SalesAggregates aggregates = new SalesAggregates();
+
+    private static Order order(long productId, String name, int unitPrice, int quantity, String orderedAt) {
+        Order order = new Order(null, productId, name, unitPrice, quantity, unitPrice * quantity);
+        order.setOrderedAt(Instant.parse(orderedAt));
+        return order;
+    }
+
+    @Test
+    void topSellers_販売数順と売上順で上位の商品が返ること() {
+        // GIVEN: キーボード 5個(25000円) / マウス 8個(16000円) / ケーブル 1個(500円)
+        aggregates.onOrderPlaced(new OrderPlacedEvent(List.of(
+            order(1L, "キーボード", 5000, 2, "2024-06-01T10:15:00Z"),
+            order(2L, "マウス", 2000, 8, "2024-06-01T10:20:00Z"),
+            order(1L, "キーボード", 5000, 3, "2024-06-01T11:05:00Z"),
+            order(3L, "ケーブル", 500, 1, "2024-06-01T11:30:00Z"))));
+
+        // WHEN
+        List<ProductSales> byUnits = aggregates.topSellers(2, Ranking.UNITS);
+        List<ProductSales> byRevenue = aggregates.topSellers(10, Ranking.REVENUE);
+
+        // THEN
+        assertThat(byUnits).extracting(ProductSales::productName).containsExactly("マウス", "キーボード");
+        assertThat(byRevenue).extracting(ProductSales::productId).containsExactly(1L, 2L, 3L);
+        assertThat(byRevenue.get(0).orders()).isEqualTo(2);
+        assertThat(byRevenue.get(0).unitsSold()).isEqualTo(5);
+        assertThat(byRevenue.get(0).revenue()).isEqualTo(25000);
+    }
+
+    @Test
+    void revenueByHour_時間帯ごとに集計され注文のない時間帯は0になること() {
+        // GIVEN: 10時台に2件、12時台に1件
+        aggregates.add(order(1L, "キーボード", 5000, 1, "2024-06-01T10:00:00Z"));
+        aggregates.add(order(2L, "マウス", 2000, 2, "2024-06-01T10:59:59Z"));
+        aggregates.add(order(1L, "キーボード", 5000, 1, "2024-06-01T12:30:00Z"));
+
+        // WHEN
+        List<HourlySales> hours = aggregates.revenueByHour(
+            Instant.parse("2024-06-01T10:30:00Z"), Instant.parse("2024-06-01T13:00:00Z"));
+
+        // THEN: from を含む10時台から12時台までの3時間分
+        assertThat(hours).extracting(HourlySales::hour).containsExactly(
+            Instant.parse("2024-06-01T10:00:00Z"),
+            Instant.parse("2024-06-01T11:00:00Z"),
+            Instant.parse("2024-06-01T12:00:00Z"));
+        assertThat(hours.get(0).orders()).isEqualTo(2);
+        assertThat(hours.get(0).revenue()).isEqualTo(9000);
+        assertThat(hours.get(1).revenue()).isZero();
+        assertThat(hours.get(2).unitsSold()).isEqualTo(1);
+    }
+
+    @Test
+    void revenueByHour_期間が長すぎる場合は例外になること() {
+        // WHEN & THEN
+        assertThatThrownBy(() -> aggregates.revenueByHour(
+            Instant.parse("2024-01-01T00:00:00Z"), Instant.parse("2024-03-01T00:00:00Z")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("期間は" + SalesAggregates.MAX_HOURS + "時間以内で指定してください。");
+    }
+}